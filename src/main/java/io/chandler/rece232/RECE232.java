@@ -26,7 +26,17 @@ For more information, please refer to <https://unlicense.org>
  */
 package io.chandler.rece232;
 
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 /**
  * RECE-232 is a data encoding scheme that encodes longwords/floats to ASCII while maximizing error detection and correctability.
@@ -54,12 +64,66 @@ public final class RECE232 {
 		return crc;
 	}
 	
+	// Slice-by-4 tables for the reflected 0xa6bc polynomial; entry [256*k + b] is byte b in lane k run through all 32 rounds
+	private static final int[] CRC_TABLE = new int[4 * 256];
+	static {
+		for (int k = 0; k < 4; k++) {
+			for (int b = 0; b < 256; b++) CRC_TABLE[256*k + b] = crc16dnp_bit_4(0, b << (8*k));
+		}
+	}
+	
+	// Table-driven equivalents of the bitwise functions above
+	static int crc16dnp_tab_4(int crc, int lw) {
+		crc ^= lw;
+		return  CRC_TABLE[      (crc        & 0xff)] ^
+				CRC_TABLE[256 + ((crc >>>  8) & 0xff)] ^
+				CRC_TABLE[512 + ((crc >>> 16) & 0xff)] ^
+				CRC_TABLE[768 +  (crc >>> 24)        ];
+	}
+	static int crc16dnp_tab_1(int crc, int byt) {
+		crc ^= byt & 0xff;
+		return (crc >>> 8) ^ CRC_TABLE[768 + (crc & 0xff)];
+	}
+	
+	/*
+	 * Character classes, one entry per byte: CLASS_5BIT or CLASS_6BIT in the top two bits with the character's
+	 *  value in the low six, or 0 for an out-of-range character.
+	 * The tab table also reads a tab as 127.
+	 */
+	static final int CLASS_MASK = 0xC0, CLASS_5BIT = 0x40, CLASS_6BIT = 0x80;
+	private static final byte[] CHAR_CLASS = new byte[256], CHAR_CLASS_TABS = new byte[256];
+	static {
+		for (int b = 32; b < 64; b++) CHAR_CLASS[b] = (byte)(CLASS_5BIT | (b - 32));
+		for (int b = 64; b < 128; b++) CHAR_CLASS[b] = (byte)(CLASS_6BIT | (b - 64));
+		System.arraycopy(CHAR_CLASS, 0, CHAR_CLASS_TABS, 0, 256);
+		CHAR_CLASS_TABS['\t'] = CHAR_CLASS[127];
+	}
+	
+	static byte[] charClasses(boolean convertTabs) {
+		return convertTabs ? CHAR_CLASS_TABS : CHAR_CLASS;
+	}
+	
 	static byte partialCRC(int crc) {
 		return (byte) (((crc >>> 0) & 0b000011) | ((crc >>> 5) & 0b001100) | ((crc >>> 10) & 0b110000));
 	}
 	
 	private RECE232() { }
 	
+	/**
+	 * Computes the encoded length of a message
+	 * @param nLongwords Number of longwords in the message
+	 * @return Message length in bytes, excluding any delimiter
+	 */
+	public static int messageLength(int nLongwords) {
+		return 8*nLongwords + 3;
+	}
+	
+	// Number of longwords the decoder will attempt to read from a message of the given length
+	static int longwordsIn(int messageLength) {
+		int msgLen = messageLength - 3;
+		return msgLen < 7 ? 0 : (msgLen + 7) / 8;
+	}
+	
 	/**
 	 * Creates a new encoder instance. The encoder may be used repeatedly for new messages, but is not thread-safe.
 	 * @return A new RECE232Encoder
@@ -76,6 +140,115 @@ public final class RECE232 {
 		return new RECE232Decoder();
 	}
 	
+	/**
+	 * Creates a decoder for newline-delimited streams. The stream decoder is not thread-safe.
+	 * @param decoder Configured decoder used for each message
+	 * @param maxLongwords Longest message expected; longer lines are dropped
+	 * @param handler Receives each decoded message
+	 * @return A new RECE232StreamDecoder
+	 */
+	public static RECE232StreamDecoder getStreamDecoder(RECE232Decoder decoder, int maxLongwords, RECE232StreamDecoder.FrameHandler handler) {
+		return new RECE232StreamDecoder(decoder, maxLongwords, handler);
+	}
+	
+	/**
+	 * Creates a decoder for batches of messages on the common fork-join pool. The batch decoder is thread-safe.
+	 * @param decoderFactory Creates a configured decoder for each pool thread
+	 * @return A new RECE232BatchDecoder
+	 */
+	public static RECE232BatchDecoder getBatchDecoder(Supplier<RECE232Decoder> decoderFactory) {
+		return new RECE232BatchDecoder(decoderFactory, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Creates a decoder for batches of messages. The batch decoder is thread-safe.
+	 * @param decoderFactory Creates a configured decoder for each pool thread
+	 * @param pool Pool to decode on
+	 * @return A new RECE232BatchDecoder
+	 */
+	public static RECE232BatchDecoder getBatchDecoder(Supplier<RECE232Decoder> decoderFactory, ForkJoinPool pool) {
+		return new RECE232BatchDecoder(decoderFactory, pool);
+	}
+	
+	/**
+	 * Creates a parallel decoder for newline-delimited capture files on the common fork-join pool.
+	 * The scanner is thread-safe.
+	 * @param decoderFactory Creates a configured decoder for each pool thread
+	 * @param maxLongwords Longest message expected; longer lines are dropped
+	 * @return A new RECE232CaptureScanner
+	 */
+	public static RECE232CaptureScanner getCaptureScanner(Supplier<RECE232Decoder> decoderFactory, int maxLongwords) {
+		return new RECE232CaptureScanner(decoderFactory, maxLongwords, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Creates a parallel decoder for newline-delimited capture files. The scanner is thread-safe.
+	 * @param decoderFactory Creates a configured decoder for each pool thread
+	 * @param maxLongwords Longest message expected; longer lines are dropped
+	 * @param pool Pool to decode on
+	 * @return A new RECE232CaptureScanner
+	 */
+	public static RECE232CaptureScanner getCaptureScanner(Supplier<RECE232Decoder> decoderFactory, int maxLongwords, ForkJoinPool pool) {
+		return new RECE232CaptureScanner(decoderFactory, maxLongwords, pool);
+	}
+	
+	/**
+	 * Creates a decoder that checks newline-delimited messages byte by byte as they arrive. The push decoder is not thread-safe.
+	 * @param decoder Configured decoder used for each message
+	 * @param maxLongwords Longest message expected; longer lines are dropped
+	 * @param handler Receives each decoded message
+	 * @return A new RECE232PushDecoder
+	 */
+	public static RECE232PushDecoder getPushDecoder(RECE232Decoder decoder, int maxLongwords, RECE232StreamDecoder.FrameHandler handler) {
+		return new RECE232PushDecoder(decoder, maxLongwords, handler);
+	}
+	
+	/**
+	 * Creates a TCP gateway that decodes a newline-delimited stream from each connection into one sink.
+	 * The gateway is thread-safe.
+	 * @param decoderFactory Creates a configured decoder for each connection
+	 * @param maxLongwords Longest message expected; longer lines are dropped
+	 * @param sink Receives decoded messages from every connection
+	 * @return A new RECE232Gateway, not yet listening
+	 */
+	public static RECE232Gateway getGateway(Supplier<RECE232Decoder> decoderFactory, int maxLongwords, RECE232Gateway.FrameSink sink) {
+		return new RECE232Gateway(decoderFactory, maxLongwords, sink);
+	}
+	
+	/**
+	 * Creates a pipeline that frames lines on the reading thread and decodes them on worker threads.
+	 * Only one thread may feed the pipeline.
+	 * @param decoderFactory Creates a configured decoder for each worker
+	 * @param maxLongwords Longest message expected; longer lines are dropped
+	 * @param handler Receives results in arrival order on the pipeline's consumer thread
+	 * @return A new RECE232Pipeline, not yet started
+	 */
+	public static RECE232Pipeline getPipeline(Supplier<RECE232Decoder> decoderFactory, int maxLongwords, RECE232Pipeline.FrameHandler handler) {
+		return new RECE232Pipeline(decoderFactory, maxLongwords, handler);
+	}
+	
+	/**
+	 * Creates a batching encoder that writes delimited messages to a channel. The stream encoder is not thread-safe.
+	 * @param encoder Configured encoder used for each message
+	 * @param out Destination channel, in blocking mode
+	 * @param bufferSize Size of the internal direct buffer in bytes
+	 * @return A new RECE232StreamEncoder
+	 */
+	public static RECE232StreamEncoder getStreamEncoder(RECE232Encoder encoder, WritableByteChannel out, int bufferSize) {
+		return new RECE232StreamEncoder(encoder, out, bufferSize);
+	}
+	
+	/**
+	 * Creates a batching encoder that writes delimited messages to a stream. The stream encoder is not thread-safe.
+	 * @param encoder Configured encoder used for each message
+	 * @param out Destination stream
+	 * @param bufferSize Size of the internal direct buffer in bytes
+	 * @return A new RECE232StreamEncoder
+	 */
+	public static RECE232StreamEncoder getStreamEncoder(RECE232Encoder encoder, OutputStream out, int bufferSize) {
+		return new RECE232StreamEncoder(encoder, Channels.newChannel(out), bufferSize);
+	}
+	
 	/**
 	 * Stateful RECE232 Encoder
 	 * @author cjgriscom
@@ -87,7 +260,10 @@ public final class RECE232 {
 		private int nLongwords;
 		
 		private int i = 0;
-		private byte[] ascii;
+		private int start = 0;
+		private byte[] ascii;      // Target array, or null when writing to a non-array buffer
+		private ByteBuffer target; // Target buffer, or null when writing to an array
+		private boolean allocated;
 		
 		private byte curSpacer;
 
@@ -105,34 +281,164 @@ public final class RECE232 {
 			return this;
 		}
 		
+		/**
+		 * Begins a new message in a newly allocated array, which is returned by {@link #finish()}
+		 * @param header6Bit 6-bit message header
+		 * @param nLongwords Number of longwords that will be appended
+		 * @return
+		 */
 		public RECE232Encoder init(byte header6Bit, int nLongwords) {
 			if (nLongwords <= 0) throw new IllegalStateException("Must encode at least one longword");
-			this.i = 0;
+			init(header6Bit, nLongwords, new byte[RECE232.messageLength(nLongwords)], 0);
+			this.allocated = true;
+			return this;
+		}
+		
+		/**
+		 * Begins a new message that is written directly into a caller-supplied array.
+		 * Complete the message with {@link #end()}.
+		 * @param header6Bit 6-bit message header
+		 * @param nLongwords Number of longwords that will be appended
+		 * @param dst Destination array
+		 * @param off Offset of the first message byte in dst
+		 * @return
+		 */
+		public RECE232Encoder init(byte header6Bit, int nLongwords, byte[] dst, int off) {
+			if (nLongwords <= 0) throw new IllegalStateException("Must encode at least one longword");
+			if (off < 0 || dst.length - off < RECE232.messageLength(nLongwords)) throw new IndexOutOfBoundsException("Destination too small");
+			begin(header6Bit, nLongwords, dst, null, off);
+			return this;
+		}
+		
+		/**
+		 * Begins a new message that is written directly into a heap or direct buffer, starting at its position.
+		 * Complete the message with {@link #end()}, which advances the buffer position past the message.
+		 * @param header6Bit 6-bit message header
+		 * @param nLongwords Number of longwords that will be appended
+		 * @param dst Destination buffer
+		 * @return
+		 */
+		public RECE232Encoder init(byte header6Bit, int nLongwords, ByteBuffer dst) {
+			if (nLongwords <= 0) throw new IllegalStateException("Must encode at least one longword");
+			if (dst.remaining() < RECE232.messageLength(nLongwords)) throw new BufferOverflowException();
+			if (dst.hasArray()) {
+				begin(header6Bit, nLongwords, dst.array(), dst, dst.arrayOffset() + dst.position());
+			} else {
+				begin(header6Bit, nLongwords, null, dst, dst.position());
+			}
+			return this;
+		}
+		
+		private void begin(byte header6Bit, int nLongwords, byte[] ascii, ByteBuffer target, int off) {
+			this.i = off;
+			this.start = off;
 			this.nLongwords = nLongwords;
-			this.ascii = new byte[8*nLongwords + 3]; // ~, message/spacers, fletcher
+			this.ascii = ascii; // ~, message/spacers, fletcher
+			this.target = target;
+			this.allocated = false;
 			this.curSpacer = (byte)(header6Bit & 0b111111); // First 6-bit spacer is the header
-			this.chk = crc16dnp_bit_1(CRC_INIT, curSpacer);
-			return this;
+			this.chk = crc16dnp_tab_1(CRC_INIT, curSpacer);
 		}
 		
+		/**
+		 * Completes a message started with {@link #init(byte, int)}
+		 * @return The encoded message
+		 */
 		public byte[] finish() {
-			ascii[i++] = (byte)((chk & 0b011111) | 0x20);
-			chk >>>= 5;
-			ascii[i++] = (byte)((chk & 0b111111) | 0x40);
-			chk >>>= 6;
-			ascii[i++] = (byte)((chk & 0b011111) | 0x20);
-			if (nLongwords != 0) throw new IllegalStateException("Expected " + nLongwords + " more longwords");
-			if (useTabs) {
-				for (int j = 0; j < ascii.length; j++) {
-					if (ascii[j] == 127) ascii[j] = (byte)'\t';
-				}
-			}
+			if (!allocated) throw new IllegalStateException("Message was encoded into a caller buffer; use end()");
+			end();
 			return ascii;
 		}
 		
+		/**
+		 * Completes the current message by writing the checksum footer
+		 * @return Number of bytes written for the message
+		 */
+		public int end() {
+			if (nLongwords != 0) throw new IllegalStateException("Expected " + nLongwords + " more longwords");
+			put5(chk);
+			put6(chk >>> 5);
+			put5(chk >>> 11);
+			if (target != null) target.position(target.position() + i - start);
+			return i - start;
+		}
+		
 		public RECE232Encoder appendLongword(int bytes) {
 			if (nLongwords-- == 0) throw new IllegalStateException("Exceeded max longwords");
-			
+			encodeLongword(bytes);
+			return this;
+		}
+		
+		/**
+		 * Appends a run of longwords from an array
+		 * @param src Source array
+		 * @param off Offset of the first longword
+		 * @param len Number of longwords
+		 * @return
+		 */
+		public RECE232Encoder appendLongwords(int[] src, int off, int len) {
+			if (off < 0 || len < 0 || src.length - off < len) throw new IndexOutOfBoundsException();
+			reserve(len);
+			for (int end = off + len; off < end; off++) encodeLongword(src[off]);
+			return this;
+		}
+		
+		/**
+		 * Appends a run of floats from an array
+		 * @param src Source array
+		 * @param off Offset of the first float
+		 * @param len Number of floats
+		 * @return
+		 */
+		public RECE232Encoder appendFloats(float[] src, int off, int len) {
+			if (off < 0 || len < 0 || src.length - off < len) throw new IndexOutOfBoundsException();
+			reserve(len);
+			for (int end = off + len; off < end; off++) encodeLongword(Float.floatToRawIntBits(src[off]));
+			return this;
+		}
+		
+		/**
+		 * Appends the remaining longwords of a buffer, advancing its position to its limit
+		 * @param src Source buffer
+		 * @return
+		 */
+		public RECE232Encoder appendLongwords(IntBuffer src) {
+			int len = src.remaining();
+			if (src.hasArray()) {
+				appendLongwords(src.array(), src.arrayOffset() + src.position(), len);
+				src.position(src.limit());
+				return this;
+			}
+			reserve(len);
+			for (int pos = src.position(), end = pos + len; pos < end; pos++) encodeLongword(src.get(pos));
+			src.position(src.limit());
+			return this;
+		}
+		
+		/**
+		 * Appends the remaining floats of a buffer, advancing its position to its limit
+		 * @param src Source buffer
+		 * @return
+		 */
+		public RECE232Encoder appendFloats(FloatBuffer src) {
+			int len = src.remaining();
+			if (src.hasArray()) {
+				appendFloats(src.array(), src.arrayOffset() + src.position(), len);
+				src.position(src.limit());
+				return this;
+			}
+			reserve(len);
+			for (int pos = src.position(), end = pos + len; pos < end; pos++) encodeLongword(Float.floatToRawIntBits(src.get(pos)));
+			src.position(src.limit());
+			return this;
+		}
+		
+		private void reserve(int len) {
+			if (len > nLongwords) throw new IllegalStateException("Exceeded max longwords");
+			nLongwords -= len;
+		}
+		
+		private void encodeLongword(int bytes) {
 			// Calculate alternating 5,6-bit characters
 			int b0 = (bytes >>>  0) & 0b011111; // 5
 			int b1 = (bytes >>>  5) & 0b111111; // 6
@@ -143,22 +449,34 @@ public final class RECE232 {
 			int b5 = (bytes >>> 27) & 0b011111; // 5
 			int xor = (b0^b1^b2^bS^b3^b4^b5) ^ 0b111111; // 6
 			
-			// Append to byte array
-			ascii[i++] = (byte)(b0 | 0x20);
-			ascii[i++] = (byte)(b1 | 0x40);
-			ascii[i++] = (byte)(b2 | 0x20);
-			ascii[i++] = (byte)(bS | 0x40);
-			ascii[i++] = (byte)(b3 | 0x20);
-			ascii[i++] = (byte)(b4 | 0x40);
-			ascii[i++] = (byte)(b5 | 0x20);
-			ascii[i++] = (byte)(xor| 0x40);
+			// Append to target
+			put5(b0);
+			put6(b1);
+			put5(b2);
+			put6(bS);
+			put5(b3);
+			put6(b4);
+			put5(b5);
+			put6(xor);
 			
-			chk = crc16dnp_bit_4(chk, bytes);
+			chk = crc16dnp_tab_4(chk, bytes);
 			
 			// Set current spacer to abbreviated fletcher
 			curSpacer = partialCRC(chk);
-			
-			return this;
+		}
+		
+		private void put5(int b) {
+			put((byte)((b & 0b011111) | 0x20));
+		}
+		
+		private void put6(int b) {
+			b = (b & 0b111111) | 0x40;
+			put(b == 127 && useTabs ? (byte)'\t' : (byte)b);
+		}
+		
+		private void put(byte b) {
+			if (ascii != null) ascii[i++] = b;
+			else target.put(i++, b);
 		}
 	}
 	
@@ -170,12 +488,38 @@ public final class RECE232 {
 	 */
 	public static final class RECE232Decoder {
 		private int nLongwords;
-		private int[] recon;
+		private long[] lanes; // Symbol b of each longword in bits 8b..8b+5, with the spacer in lane 3 and the XOR check in lane 7
+		private int[] words;  // Data of each longword, assembled from lanes once a message decodes
+		private int[] prefixCRC; // Running CRC through each longword, valid up to the current correction index
+		private byte[] gapLanes; // Lane of the gap in each longword, or -1
+		private byte[] hintLanes; // Lanes of each longword holding a flagged byte that was kept, tried first in corrections
+		private boolean[] badChks;
+		private ByteBuffer srcBuffer; // Message source while loading from a buffer without an accessible array
+		private boolean srcBigEndian;
+		private long[] erasures; // Bitmap of bytes the receiver flagged while loading with hints, or null
 		private boolean madeCorrections = false;
 		
 		private boolean skipRecoveryOnCorruptedChecksum = true;
 		private boolean failOnCorruptedChecksum = false;
 		private boolean convertTabs = false;
+		private byte[] charClass = charClasses(false);
+		
+		private int correctionBudget = 0;       // Max correction nodes per message, or 0 for no limit
+		private long correctionDeadlineNanos = 0; // Max correction time per message, or 0 for no limit
+		private boolean bestCandidateSearch = false;
+		
+		private int nodesLeft;
+		private long deadline;
+		private boolean budgetExhausted = false;
+		private int bestCost;
+		private long[] bestLanes; // Snapshot of the best candidate during a best candidate search
+		
+		private RECE232Metrics metrics = null;
+		
+		// Work done on the current message, read by the metrics
+		int gapBranches, correctionNodes, maxCorrectionDepth, gapsFilled, bytesCorrected;
+		boolean partialChecksum;
+		private int alignmentFixes, pathFixes, acceptedFixes; // Corrupt characters replaced during alignment and correction
 		
 		private RECE232Decoder() { }
 		
@@ -203,6 +547,54 @@ public final class RECE232 {
 			return this;
 		}
 		
+		/**
+		 * Limits the number of search nodes the decoder may visit while correcting longword checksums.
+		 * When the budget runs out the message fails to load (or yields the best candidate found so far
+		 * during a best candidate search), and {@link #budgetExhausted()} reports true.
+		 * @param maxNodes Maximum nodes per message, or 0 for no limit. Default is 0.
+		 * @return
+		 */
+		public RECE232Decoder setCorrectionBudget(int maxNodes) {
+			if (maxNodes < 0) throw new IllegalArgumentException("Budget must not be negative");
+			this.correctionBudget = maxNodes;
+			return this;
+		}
+		
+		/**
+		 * Limits the time the decoder may spend correcting longword checksums, with the same effect as
+		 * {@link #setCorrectionBudget(int)} when it runs out.
+		 * @param deadlineNanos Maximum correction time per message in nanoseconds, or 0 for no limit. Default is 0.
+		 * @return
+		 */
+		public RECE232Decoder setCorrectionDeadline(long deadlineNanos) {
+			if (deadlineNanos < 0) throw new IllegalArgumentException("Deadline must not be negative");
+			this.correctionDeadlineNanos = deadlineNanos;
+			return this;
+		}
+		
+		/**
+		 * By default the decoder accepts the first correction that passes the full checksum.
+		 * A best candidate search instead continues through every correction that passes, and keeps the one
+		 * that flips the fewest bits.
+		 * @param bestCandidate true to search for the correction with the fewest flipped bits. False by default.
+		 * @return
+		 */
+		public RECE232Decoder setBestCandidateSearch(boolean bestCandidate) {
+			this.bestCandidateSearch = bestCandidate;
+			return this;
+		}
+		
+		/**
+		 * Collects statistics on every message this decoder loads.
+		 * Without metrics the decoder only keeps a few per-message counts, and doesn't read the clock.
+		 * @param metrics Metrics to update, which may be shared between decoders, or null to disable. Null by default.
+		 * @return
+		 */
+		public RECE232Decoder setMetrics(RECE232Metrics metrics) {
+			this.metrics = metrics;
+			return this;
+		}
+		
 		/**
 		 * Allow tab character in place of non-printable 127 (ASCII DEL)
 		 * @param convertTabs True to detect and convert tabs. Default is false.
@@ -210,77 +602,157 @@ public final class RECE232 {
 		 */
 		public RECE232Decoder setConvertTabs(boolean convertTabs) {
 			this.convertTabs = convertTabs;
+			this.charClass = charClasses(convertTabs);
 			return this;
 		}
 		
 		private static final int INCOMPLETE = Integer.MAX_VALUE; // Magic number to signify length mismatch
-		private int calculateGaps(byte[] src, int i, int r, int n, int[] gaps, int gapCount) {
-			nextByte: for (;; i++, r++) {
-				int longwordIndex = r / 8;
-				boolean exp5Bit = r % 2 == 0;
-				if (i >= src.length - 2) { // src.length - 2 is the first fletcher character
+		private static final byte UNREACHABLE = Byte.MAX_VALUE; // Gap cost of a state that can't reach the end
+		
+		/*
+		 * Each out-of-range character is either corrupt or follows a dropped character (gap), and each longword
+		 *  may contain only one of either. The alignment with the fewest gaps wins, preferring the gap on a tie
+		 *  unless the receiver flagged the character, which makes corruption the likelier explanation.
+		 * Gap costs are tabulated backwards from the first ambiguous character over the states
+		 *  (symbol index, gaps so far, longword already has a gap), so the work is linear in message length.
+		 */
+		private int calculateGaps(byte[] src, int off, int len, int n) {
+			int maxGaps = n - (len - 3); // Gaps needed to stretch the message to n characters
+			int costsStart = -1; // First symbol index in gapCosts, once tabulated
+			boolean gapInLongword = false;
+			for (int i = 0, r = 0;; i++, r++) {
+				if (r % 8 == 0) gapInLongword = false;
+				if (i >= len - 2) { // len - 2 is the first fletcher character
 					// Ran through end
-					if (DEBUG) System.out.println("Finished calculateGaps0: " + i + "," + r + ": " + gapCount);
-					return r == n ? gapCount : INCOMPLETE; // Have we finished
+					if (DEBUG) System.out.println("Finished calculateGaps0: " + i + "," + r + ": " + (r - i));
+					return r == n ? r - i : INCOMPLETE; // Have we finished
 				} else if (r == n) {
-					if (DEBUG) System.out.println("Finished calculateGaps1: " + i + "," + r + ": " + gapCount);
-					return i == src.length - 3 ? gapCount : INCOMPLETE; // Made it to end
+					if (DEBUG) System.out.println("Finished calculateGaps1: " + i + "," + r + ": " + (r - i));
+					return i == len - 3 ? r - i : INCOMPLETE; // Made it to end
+				}
+				
+				// Allow pushing into the first fletcher char, in case there's a gap before there
+				int c = charClass[at(src, off + i)];
+				int cls = c & CLASS_MASK;
+				boolean flagged = erasures != null && erased(i);
+				if (flagged && cls == CLASS_5BIT << (r & 1)) hintLanes[r / 8] |= 1 << (r % 8);
+				
+				if (cls == 0) {
+					if (DEBUG) System.out.println(i + "," + r + " !");
+					// Out of ascii range; consider this a corrupt character
+					if (gapInLongword) return INCOMPLETE; // Already counted a gap in this longword
+					gapLanes[r / 8] = (byte)(r % 8); // Lane stays 0
+					gapInLongword = true;
+					alignmentFixes++;
+				} else if (cls == CLASS_5BIT << (r & 1)) {
+					if (DEBUG) System.out.println(i + "," + r + (cls == CLASS_5BIT ? " 5" : " 6"));
+					// Is the expected 5-bit or 6-bit class
+					lanes[r / 8] |= (long)(c & 0b111111) << (r % 8 * 8);
 				} else {
-					// Allow pushing into the first fletcher char, in case there's a gap before there
-					int byt = src[i] & 0xff;
-					if (convertTabs && byt == (byte)'\t') byt = 127;
+					if (DEBUG) System.out.println(i + "," + r + " G");
+					
+					// It's not in the expected range, could be a gap or a corrupt character
+					if (gapInLongword) return INCOMPLETE; // Already counted a gap in this longword
 					
-					if (byt < 32 || byt >= 128) {
-						if (DEBUG) System.out.println(i + "," + r + " !");
-						// Out of ascii range; consider this a corrupt character
-						if (gaps[longwordIndex] != -1) return INCOMPLETE; // Already counted a gap in this longword
-						gaps[longwordIndex] = r;
-						recon[r] = 0;
-						continue nextByte; // Unconditionally continue to next byte
-					} else if (exp5Bit && byt < 64) {
-						if (DEBUG) System.out.println(i + "," + r + " 5");
-						// Is expected 5-bit
-						recon[r] = byt - 32;
-						continue nextByte; // Unconditionally continue to next byte
-					} else if (!exp5Bit && byt >= 64) {
-						if (DEBUG) System.out.println(i + "," + r + " 6");
-						// Is expected 6-bit
-						recon[r] = byt - 64;
-						continue nextByte; // Unconditionally continue to next byte
+					gapLanes[r / 8] = (byte)(r % 8); // Mark lane of gap, which stays 0
+					gapInLongword = true;
+					
+					gapBranches++;
+					if (costsStart < 0) tabulateGapCosts(src, off, len, n, costsStart = r, maxGaps);
+					int corruptCase = gapCost(r + 1, r - i, maxGaps, costsStart);
+					int gapCase = gapCost(r + 1, r - i + 1, maxGaps, costsStart);
+					if (gapCase != UNREACHABLE) gapCase++;
+					if (corruptCase == UNREACHABLE && gapCase == UNREACHABLE) return INCOMPLETE;
+					
+					// Compare penalties of each case
+					if (corruptCase > gapCase || (corruptCase == gapCase && !flagged)) {
+						i--; // Prefer gap; the same byte is considered at the next index
+						gapsFilled++;
 					} else {
-						if (DEBUG) System.out.println(i + "," + r + " G");
-						
-						// It's not in the expected range, could be a gap or a corrupt character
-						if (gaps[longwordIndex] != -1) return INCOMPLETE; // Already counted a gap in this longword
-						
-						recon[r] = 0; // Set gap
-						gaps[longwordIndex] = r; // Mark index of gap
-						
-						// Try corrupt case
-						int corruptCase = calculateGaps(src, i+1, r+1, n, gaps, gapCount); // Recursive branch
-						if (corruptCase == 0) return corruptCase; // This is best case for sure; just return
-						
-						// Try gap case
-						for (int l = longwordIndex + 1; l < gaps.length; l++) gaps[l] = -1; // Reset following gaps
-						int gapCase = calculateGaps(src, i, r+1, n, gaps, gapCount+1); // Recursive branch
+						alignmentFixes++;
+					}
+				}
+			}
+		}
+		
+		private byte[] gapCosts;
+		
+		// Least number of further gaps from state (r, g) inside a longword that already has a gap
+		private int gapCost(int r, int g, int maxGaps, int costsStart) {
+			if (g > maxGaps) return UNREACHABLE;
+			return gapCosts[((r - costsStart) * (maxGaps + 1) + g) * 2 + (r % 8 == 0 ? 0 : 1)];
+		}
+		
+		private void tabulateGapCosts(byte[] src, int off, int len, int n, int start, int maxGaps) {
+			int width = (maxGaps + 1) * 2;
+			int size = (n - start + 1) * width;
+			if (gapCosts == null || gapCosts.length < size) gapCosts = new byte[size];
+			
+			for (int r = n; r >= start; r--) {
+				int row = (r - start) * width;
+				boolean endOfLongword = (r + 1) % 8 == 0;
+				for (int g = 0; g <= maxGaps; g++) {
+					int i = r - g;
+					int clean, gapped; // Cost when the longword doesn't or does already have a gap
+					if (i < 0) {
+						clean = gapped = UNREACHABLE;
+					} else if (i >= len - 2) {
+						clean = gapped = r == n ? 0 : UNREACHABLE;
+					} else if (r == n) {
+						clean = gapped = i == len - 3 ? 0 : UNREACHABLE;
+					} else {
+						int next = row + width + g * 2; // State (r + 1, g)
+						int cls = charClass[at(src, off + i)] & CLASS_MASK;
 						
-						// Compare penalties of each case
-						if (corruptCase < gapCase) { // Prefer corrupt
-							for (int l = longwordIndex + 1; l < gaps.length; l++) gaps[l] = -1; // Reset following gaps
-							// Recalculate corrupt case (TODO better way?)
-							continue nextByte; // Unconditionally continue to next byte
-						} else { // Prefer gap
-							// recon & gaps currently contain the result of gap case, so just return
-							return gapCase;
+						if (cls == 0) {
+							clean = gapCosts[next + (endOfLongword ? 0 : 1)];
+							gapped = UNREACHABLE;
+						} else if (cls == CLASS_5BIT << (r & 1)) {
+							clean = gapCosts[next];
+							gapped = gapCosts[next + (endOfLongword ? 0 : 1)];
+						} else {
+							int corruptCase = gapCosts[next + (endOfLongword ? 0 : 1)];
+							int gapCase = g == maxGaps ? UNREACHABLE : gapCosts[next + 2 + (endOfLongword ? 0 : 1)];
+							if (gapCase != UNREACHABLE) gapCase++;
+							clean = Math.min(corruptCase, gapCase);
+							gapped = UNREACHABLE;
 						}
 					}
+					gapCosts[row + g * 2] = (byte) clean;
+					gapCosts[row + g * 2 + 1] = (byte) gapped;
 				}
-				//break; // Shall never drop through
 			}
 		}
 		
 		private static final int GOOD_MASK = 0b11111_111111_11111;
 		
+		/*
+		 * Recoverable footers, indexed by the classes of the three characters, first character in the high bits.
+		 * Each entry holds the checksum mask in the low 16 bits and the shift of each character above it;
+		 *  an unused character is shifted out of the checksum. Unrecoverable footers are 0.
+		 */
+		private static final int[] FLETF_LAYOUT = new int[64];
+		private static final int UNUSED = 16;
+		static {
+			// There are six signature possibilities for a recoverable fletF
+			// ! represents an out-of-range character
+			// 5 is a 5-bit character, 6 is a 6-bit character
+			// !65, 5!5, 56!, 6(G)65, 65(G)5, 656(G)
+			fletFLayout('5', '6', '5', 0,      5,      11,     GOOD_MASK);            // Good
+			fletFLayout('!', '6', '5', UNUSED, 5,      11,     0b11111_111111_00000); // First is corrupt
+			fletFLayout('5', '!', '5', 0,      UNUSED, 11,     0b11111_000000_11111); // Second is corrupt
+			fletFLayout('5', '6', '!', 0,      5,      UNUSED, 0b00000_111111_11111); // Third is corrupt
+			fletFLayout('6', '6', '5', UNUSED, 5,      11,     0b11111_111111_00000); // Gap in first position
+			fletFLayout('6', '5', '5', UNUSED, 0,      11,     0b11111_000000_11111); // Gap in second position
+			fletFLayout('6', '5', '6', UNUSED, 0,      5,      0b00000_111111_11111); // Gap in third position
+		}
+		
+		private static void fletFLayout(char f0, char f1, char f2, int shift0, int shift1, int shift2, int mask) {
+			int sig = 0;
+			for (char f : new char[] {f0, f1, f2}) sig = sig << 2 | (f == '5' ? 1 : f == '6' ? 2 : 0);
+			FLETF_LAYOUT[sig] = mask | shift0 << 16 | shift1 << 21 | shift2 << 26;
+		}
+		
 		/**
 		 * Loads a message for decoding.
 		 * If load() returns true, the message contents may be retrieved from the decoder.
@@ -289,219 +761,498 @@ public final class RECE232 {
 		 * @return True if the message was successfully decoded
 		 */
 		public boolean load(byte[] src) {
+			return load(src, 0, src.length);
+		}
+		
+		/**
+		 * Loads the remaining bytes of a buffer as a message for decoding. The buffer position is not modified.
+		 * Direct and read-only buffers are read in place, without copying the message.
+		 * @param src Message buffer
+		 * @return True if the message was successfully decoded
+		 * @see #load(byte[])
+		 */
+		public boolean load(ByteBuffer src) {
+			int len = src.remaining();
+			if (src.hasArray()) return load(src.array(), src.arrayOffset() + src.position(), len);
+			this.srcBuffer = src;
+			this.srcBigEndian = src.order() == ByteOrder.BIG_ENDIAN;
+			try {
+				return timedDecode(null, src.position(), len);
+			} finally {
+				this.srcBuffer = null; // Don't hold on to the caller's buffer
+			}
+		}
+		
+		/**
+		 * Loads a message for decoding with the receiver's error flags, such as UART framing and parity errors.
+		 * A flagged byte outside its expected character range is taken as corrupt rather than as following a
+		 *  dropped character whenever both alignments need as many gaps, and flagged bytes are the first
+		 *  candidates when a longword check fails.
+		 * The footer is decoded as usual.
+		 * @param src Array containing the message
+		 * @param off Offset of the first message byte
+		 * @param len Message length, excluding any delimiter
+		 * @param erasures Bitmap of flagged bytes; bit i (erasures[i / 64] >>> i % 64) flags byte off + i, or null for none
+		 * @return True if the message was successfully decoded
+		 * @see #load(byte[])
+		 */
+		public boolean load(byte[] src, int off, int len, long[] erasures) {
+			checkErasures(erasures, len);
+			this.erasures = erasures;
+			try {
+				return load(src, off, len);
+			} finally {
+				this.erasures = null;
+			}
+		}
+		
+		/**
+		 * Loads the remaining bytes of a buffer as a message for decoding with the receiver's error flags.
+		 * The buffer position is not modified.
+		 * @param src Message buffer
+		 * @param erasures Bitmap of flagged bytes; bit i flags the byte i past the buffer position, or null for none
+		 * @return True if the message was successfully decoded
+		 * @see #load(byte[], int, int, long[])
+		 */
+		public boolean load(ByteBuffer src, long[] erasures) {
+			checkErasures(erasures, src.remaining());
+			this.erasures = erasures;
+			try {
+				return load(src);
+			} finally {
+				this.erasures = null;
+			}
+		}
+		
+		private static void checkErasures(long[] erasures, int len) {
+			if (erasures != null && erasures.length < (len + 63) >>> 6) throw new IllegalArgumentException("Erasure bitmap is shorter than the message");
+		}
+		
+		/**
+		 * Loads a message for decoding from a region of an array.
+		 * Scratch space is retained between calls, so decoding messages of a steady size does not allocate.
+		 * @param src Array containing the message
+		 * @param off Offset of the first message byte
+		 * @param len Message length, excluding any delimiter
+		 * @return True if the message was successfully decoded
+		 * @see #load(byte[])
+		 */
+		public boolean load(byte[] src, int off, int len) {
+			if (off < 0 || len < 0 || src.length - off < len) throw new IndexOutOfBoundsException();
+			return timedDecode(src, off, len);
+		}
+		
+		private boolean timedDecode(byte[] src, int off, int len) {
+			if (metrics == null) return decode(src, off, len);
+			
+			long start = System.nanoTime();
+			boolean ok = decode(src, off, len);
+			metrics.record(this, ok, System.nanoTime() - start);
+			return ok;
+		}
+		
+		/*
+		 * Takes a message whose range, XOR, spacer and CRC checks have already passed, as in RECE232PushDecoder,
+		 *  and only unpacks the characters.
+		 */
+		void loadVerified(byte[] src, int off, int len) {
+			long start = metrics == null ? 0 : System.nanoTime();
+			startMessage();
+			this.nLongwords = (len - 3) / 8;
+			growScratch();
+			for (int n = 0; n < nLongwords; n++, off += 8) lanes[n] = pack(src, off) & ~SWAR_RANGE_MASK;
+			assembleWords();
+			if (metrics != null) metrics.record(this, true, System.nanoTime() - start);
+		}
+		
+		boolean convertsTabs() {
+			return convertTabs;
+		}
+		
+		private void startMessage() {
 			this.madeCorrections = false;
-			int len = src.length;
-			len -= 3; // Subtract fletcher footer, remainder should be n*8b
-			if (len < 7) return false; // below minimum recoverable bytes
-			this.nLongwords = (len + 7) / 8;
+			this.budgetExhausted = false;
+			gapBranches = correctionNodes = maxCorrectionDepth = gapsFilled = bytesCorrected = 0;
+			alignmentFixes = pathFixes = acceptedFixes = 0;
+			partialChecksum = false;
+		}
+		
+		private void growScratch() {
+			if (lanes == null || lanes.length < nLongwords) {
+				this.lanes = new long[nLongwords];
+				this.words = new int[nLongwords];
+				this.prefixCRC = new int[nLongwords];
+				this.gapLanes = new byte[nLongwords];
+				this.hintLanes = new byte[nLongwords];
+				this.badChks = new boolean[nLongwords];
+			}
+		}
+		
+		private void clearScratch() {
+			Arrays.fill(lanes, 0, nLongwords, 0);
+			Arrays.fill(gapLanes, 0, nLongwords, (byte)-1);
+			Arrays.fill(hintLanes, 0, nLongwords, (byte)0);
+			Arrays.fill(badChks, 0, nLongwords, false);
+		}
+		
+		// Runs only the gap alignment of a message of at least 10 bytes, for tests; the gap count, or -1 if it can't be aligned
+		int alignGaps(byte[] src, int off, int len) {
+			startMessage();
+			this.nLongwords = (len - 3 + 7) / 8;
+			growScratch();
+			clearScratch();
+			int gaps = calculateGaps(src, off, len, nLongwords * 8);
+			return gaps == INCOMPLETE ? -1 : gaps;
+		}
+		
+		// Symbols of longword n after alignGaps, one per byte lane, with 0 in its gap lane
+		long alignedLanes(int n) {
+			return lanes[n];
+		}
+		
+		// Lane of the gap or corrupt character in longword n after alignGaps, or -1
+		int gapLane(int n) {
+			return gapLanes[n];
+		}
+		
+		private void assembleWords() {
+			for (int n = 0; n < nLongwords; n++) words[n] = word(lanes[n]);
+		}
+		
+		private boolean decode(byte[] src, int off, int len) {
+			startMessage();
+			int msgLen = len - 3; // Subtract fletcher footer, remainder should be n*8b
+			if (msgLen < 7) return false; // below minimum recoverable bytes
+			this.nLongwords = (msgLen + 7) / 8;
 			if (DEBUG) System.out.println(nLongwords + " longwords");
 			
 			// Extract fletF
 			// Src is little endian, so these indices are really confusing
 			//  They reflect the ascending array character order, OR the big endian register locations
-			int fF2 = src[src.length - 1] & 0xff;
-			int fF1 = src[src.length - 2] & 0xff;
-			int fF0 = src[src.length - 3] & 0xff;
-			// There are six signature possibilities for a recoverable fletF
-			// ! (F) represents an out-of-range character
-			// 5 (0) is a 5-bit character, 6 (1) is a 6-bit character
-			// !65, 5!5, 56!, 6(G)65, 65(G)5, 656(G)
+			int fF2 = charClass[at(src, off + len - 1)];
+			int fF1 = charClass[at(src, off + len - 2)];
+			int fF0 = charClass[at(src, off + len - 3)];
+			int layout = FLETF_LAYOUT[(fF0 & CLASS_MASK) >>> 2 | (fF1 & CLASS_MASK) >>> 4 | (fF2 & CLASS_MASK) >>> 6];
+			if (DEBUG) System.out.println("Layout: " + Integer.toHexString(layout));
+			if (layout == 0) return false; // Not recoverable
 			
-			if (convertTabs) {
-				if (fF2 == (byte)'\t') fF2 = 127;
-				if (fF1 == (byte)'\t') fF1 = 127;
-				if (fF0 == (byte)'\t') fF0 = 127;
-			}
-			
-			short fletFErrSig = 0x000;
-			if (fF0 < 32 || fF0 >= 128) fletFErrSig |= 0xF00;
-			else if (fF0 >= 64)         fletFErrSig |= 0x100;
-			if (fF1 < 32 || fF1 >= 128) fletFErrSig |= 0x0F0;
-			else if (fF1 >= 64)         fletFErrSig |= 0x010;
-			if (fF2 < 32 || fF2 >= 128) fletFErrSig |= 0x00F;
-			else if (fF2 >= 64)         fletFErrSig |= 0x001;
-			if (DEBUG) System.out.println("ErrSig: " + Integer.toHexString(fletFErrSig));
+			int fletFMask = layout & 0xffff; // Final mask if recoverable
 			
 			// Don't allow partial fletF matching
-			if (fletFErrSig != 0x010 && failOnCorruptedChecksum) return false;
-
-			int fletF = 0;   // Final value if good or recoverable
-			int fletFMask = 0; // Final mask if recoverable
-			switch(fletFErrSig) {
-				case 0x010: // Good
-					fletF = ((fF2-0x20) << 11) | ((fF1-0x40) << 5) | ((fF0-0x20) << 0);
-					fletFMask = GOOD_MASK;
-					break;
-				case 0xF10: // First is corrupt
-					fletF = ((fF2-0x20) << 11) | ((fF1-0x40) << 5);
-					fletFMask = 0b11111_111111_00000;
-					break;
-				case 0x0F0: // Second is corrupt
-					fletF = ((fF2-0x20) << 11) | ((fF0-0x20) << 0);
-					fletFMask = 0b11111_000000_11111;
-					break;
-				case 0x01F: // Third is corrupt
-					fletF = ((fF1-0x40) << 5) | ((fF0-0x20) << 0);
-					fletFMask = 0b00000_111111_11111;
-					break;
-				case 0x110: // Gap in first position
-					fletF = ((fF2-0x20) << 11) | ((fF1-0x40) << 5);
-					fletFMask = 0b11111_111111_00000;
-					break;
-				//case 0x000:
-				//case 0xF00:
-				case 0x100: // Gap in second position
-					fletF = ((fF2-0x20) << 11) | ((fF1-0x20) << 0);
-					fletFMask = 0b11111_000000_11111;
-					break;
-				//case 0x001:
-				//case 0xF01:
-				case 0x101: // Gap in third position
-					fletF = ((fF2-0x40) << 5) | ((fF1-0x20) << 0);
-					fletFMask = 0b00000_111111_11111;
-					break;
-				default: // Not recoverable
-					return false;
-			}
+			if (fletFMask != GOOD_MASK && failOnCorruptedChecksum) return false;
+			
+			// Final value if good or recoverable
+			int fletF = ((fF2 & 0b111111) << (layout >>> 26 & 31) |
+						 (fF1 & 0b111111) << (layout >>> 21 & 31) |
+						 (fF0 & 0b111111) << (layout >>> 16 & 31)) & fletFMask;
+			
+			if (fletFMask != GOOD_MASK) madeCorrections = partialChecksum = true;
 			
-			if (fletFMask != GOOD_MASK) madeCorrections = true;
+			growScratch();
 			
-			this.recon = new int[nLongwords * 8];
-			int[] gaps = new int[nLongwords];
-			Arrays.fill(gaps, -1);
-			boolean[] badChks = new boolean[nLongwords];
+			// Most traffic is clean, so screen for that in one pass before aligning gaps
+			if (fletFMask == GOOD_MASK && len - 3 == nLongwords * 8 && loadClean(src, off, fletF)) return true;
 			
-			if (calculateGaps(src, 0, 0, nLongwords * 8, gaps, 0) == INCOMPLETE) return false; // Recursive gaps calculation
+			clearScratch();
+			if (calculateGaps(src, off, len, nLongwords * 8) == INCOMPLETE) return false; // Gap alignment
 			
 			// Process checksums or fill gaps
 			for (int n = 0; n < nLongwords; n++) {
-				int gapIdx = gaps[n];
-				if (gapIdx == -1) {
+				int gapLane = gapLanes[n];
+				if (gapLane == -1) {
 					// No gaps; just verify checksum
-					if (!verifyReconChk(n*8)) {
+					if (xorCheck(lanes[n]) != 0b111111) {
 						badChks[n] = true;
 						madeCorrections = true;
 						if (DEBUG) System.out.println("Bad checksum " + n);
 					}
 				} else {
-					int chk = 0;
-					for (int b = n*8; b < n*8 + 8; b++) {
-						if (b == gapIdx) continue;
-						madeCorrections = true;
-						if (DEBUG) System.out.println("Fill gap chk" + b);
-						chk ^= recon[b];
-					}
-					recon[gapIdx] = chk ^ 0b111111;
+					// The gap lane is still 0, so the XOR of the whole longword is the XOR of the rest
+					madeCorrections = true;
+					if (DEBUG) System.out.println("Fill gap " + (n*8 + gapLane));
+					lanes[n] |= (long)(xorCheck(lanes[n]) ^ 0b111111) << (gapLane * 8);
 				}
 			}
 			
-			// Recursively attempt to correct wrong checksums
-			// TODO can improve statistical accuracy by keeping an n-bitflips score and returning the best one
-			// TODO implement a configurable limit to recursive calls
-			return correctChecksums(badChks, false, 0, fletF, fletFMask);
-		}
-		
-		// Recursive correction
-		private boolean correctChecksums(boolean[] badChks, boolean triedNextFletCRepl, int n, int fletF, int fletFMask) {
-			// Base case, OR recovery is disabled w/ a partial fletF
-			if ((skipRecoveryOnCorruptedChecksum && fletFMask != GOOD_MASK) || n == badChks.length) {
-				if (DEBUG) System.out.println("Attempting full checksum verification");
-				for (boolean b : badChks) if (b) return false; // Bad checksums still exist (skip recovery must be set)
-				return verifyFletF(fletF, fletFMask);
-			} else if (badChks[n]) {
-				if (DEBUG) System.out.println("Processing bad checksum " + n);
+			// Search for corrections of wrong checksums
+			this.nodesLeft = correctionBudget > 0 ? correctionBudget : Integer.MAX_VALUE;
+			if (correctionDeadlineNanos > 0) this.deadline = System.nanoTime() + correctionDeadlineNanos;
+			if (!bestCandidateSearch) {
+				if (!correctChecksums(fletF, fletFMask)) return false;
+			} else {
+				this.bestCost = Integer.MAX_VALUE;
+				if (bestLanes == null || bestLanes.length < lanes.length) bestLanes = new long[lanes.length];
+				correctChecksums(fletF, fletFMask);
+				if (bestCost == Integer.MAX_VALUE) return false;
+				System.arraycopy(bestLanes, 0, lanes, 0, nLongwords);
+			}
+			assembleWords();
+			bytesCorrected = alignmentFixes + acceptedFixes;
+			return true;
+		}
+		
+		private static final long SWAR_RANGE_MASK = 0xC0E0C0E0C0E0C0E0L; // High bits of alternating 5,6-bit characters
+		private static final long SWAR_RANGE      = 0x4020402040204020L;
+		private static final long SWAR_TAB        = 0x0909090909090909L;
+		private static final long SWAR_LOW7       = 0x7F7F7F7F7F7F7F7FL;
+		
+		/*
+		 * Accepts the message if every longword is in range with a good XOR check and spacer and the full CRC matches.
+		 * Each longword is handled as a single little-endian long, one character per byte lane.
+		 * Returns false without side effects on the outcome if anything is off, so the caller can fall back.
+		 */
+		private boolean loadClean(byte[] src, int off, int fletF) {
+			int crc = 0;
+			for (int n = 0; n < nLongwords; n++, off += 8) {
+				long x = pack(src, off);
+				if ((x & SWAR_RANGE_MASK) != SWAR_RANGE) return false;
 				
-				if (!triedNextFletCRepl && n != badChks.length - 1 && badChks[n+1]) {
-					if (DEBUG) System.out.println("Try following fletC repl");
-					// Next checksum is also bad, so the following fletC byte could be corrupt. Try replacing it.
-					int chk = 0b111111;
-					for (int b = 8; b < 16; b++) {
-						chk ^= recon[b + n*8];
-					}
-					// Try to replace byte with the rest of the checksum
-					if (DEBUG) System.out.print("NextFletC: " + recon[n*8 + 11]);
-					recon[n*8 + 11] ^= chk;
-					badChks[n+1] = false;
-					if (DEBUG) System.out.println(" -> " + recon[n*8 + 11]);
+				long v = x & ~SWAR_RANGE_MASK;
+				if (xorCheck(v) != 0b111111) return false;
+				
+				int spacer = spacer(v);
+				if (n == 0) crc = crc16dnp_tab_1(CRC_INIT, spacer); // Header
+				else if (spacer != partialCRC(crc)) return false;
+				
+				lanes[n] = v;
+				crc = crc16dnp_tab_4(crc, words[n] = word(v));
+			}
+			return (crc & GOOD_MASK) == fletF;
+		}
+		
+		// Whether the receiver flagged byte i of the message
+		private boolean erased(int i) {
+			return (erasures[i >>> 6] >>> i & 1) != 0;
+		}
+		
+		// Byte of the message at index i of src, or of the buffer being loaded when src is null
+		private int at(byte[] src, int i) {
+			return (src != null ? src[i] : srcBuffer.get(i)) & 0xff;
+		}
+		
+		// Reads a longword of characters as a little-endian long, one character per byte lane, converting tabs if enabled
+		private long pack(byte[] src, int off) {
+			long x;
+			if (src != null) {
+				x = (src[off    ] & 0xffL)       | (src[off + 1] & 0xffL) <<  8 |
+					(src[off + 2] & 0xffL) << 16 | (src[off + 3] & 0xffL) << 24 |
+					(src[off + 4] & 0xffL) << 32 | (src[off + 5] & 0xffL) << 40 |
+					(src[off + 6] & 0xffL) << 48 | (src[off + 7] & 0xffL) << 56;
+			} else {
+				x = srcBuffer.getLong(off); // A single load from a direct buffer
+				if (srcBigEndian) x = Long.reverseBytes(x);
+			}
+			if (convertTabs) {
+				// Flag lanes equal to a tab, then turn them into 127
+				long t = x ^ SWAR_TAB;
+				long tabs = ~(((t & SWAR_LOW7) + SWAR_LOW7) | t | SWAR_LOW7);
+				x ^= (tabs >>> 7) * ('\t' ^ 127);
+			}
+			return x;
+		}
+		
+		// XOR of the eight symbols of a longword, which is 0b111111 when the check symbol is good
+		private static int xorCheck(long v) {
+			long xor = v ^ (v >>> 32);
+			xor ^= xor >>> 16;
+			xor ^= xor >>> 8;
+			return (int)xor & 0b111111;
+		}
+		
+		// Header or partial CRC symbol of a longword
+		private static int spacer(long v) {
+			return (int)(v >>> 24) & 0b111111;
+		}
+		
+		// Data of a longword; a corrected 5-bit symbol may spill its sixth bit into the next field
+		private static int word(long v) {
+			return  ((int)(v       ) & 0b111111) <<  0 |
+					((int)(v >>>  8) & 0b111111) <<  5 |
+					((int)(v >>> 16) & 0b111111) << 11 |
+					((int)(v >>> 32) & 0b111111) << 16 |
+					((int)(v >>> 40) & 0b111111) << 21 |
+					((int)(v >>> 48) & 0b111111) << 27;
+		}
+		
+		private int[] frames; // Correction search stack, FRAME ints per frame
+		private static final int FRAME = 4; // n, cost, depth, state
+		private static final int NEXT_FLETC_FRAME = 1 << 16; // State flag of a frame that replaced the next spacer
+		
+		/*
+		 * Depth-first correction of bad longword checksums, visiting nodes in the order of a recursive search.
+		 * Cost is the number of bits flipped so far, and depth the number of nodes on the path.
+		 * Nodes with more than one child keep a frame on an explicit stack: either a trial replacement of the next
+		 *  spacer, or a partial fletcher holding the XOR fix in the low 6 bits and the next lane to try above them.
+		 * Other nodes continue in place, so there are at most two frames per longword whatever the message length.
+		 */
+		private boolean correctChecksums(int fletF, int fletFMask) {
+			if (frames == null || frames.length < nLongwords * 2 * FRAME) frames = new int[nLongwords * 2 * FRAME];
+			int top = 0;
+			boolean triedNextFletCRepl = false;
+			int n = 0, cost = 0, depth = 1;
+			search: for (;;) {
+				enter: {
+					if (!spendNode()) return false; // Out of budget or time; a best candidate found so far still stands
+					if (depth > maxCorrectionDepth) maxCorrectionDepth = depth;
+					if (bestCandidateSearch && cost >= bestCost) break enter; // Can't beat the best candidate
 					
-					if (correctChecksums(badChks, true, n, fletF, fletFMask)) return true;
+					// Base case, OR recovery is disabled w/ a partial fletF
+					if ((skipRecoveryOnCorruptedChecksum && fletFMask != GOOD_MASK) || n == nLongwords) {
+						if (DEBUG) System.out.println("Attempting full checksum verification");
+						for (int l = 0; l < nLongwords; l++) if (badChks[l]) break enter; // Bad checksums still exist (skip recovery must be set)
+						if (!verifyFletF(n, fletF, fletFMask)) break enter;
+						acceptedFixes = pathFixes;
+						if (!bestCandidateSearch) return true;
+						
+						// Record the candidate and keep searching
+						bestCost = cost;
+						System.arraycopy(lanes, 0, bestLanes, 0, nLongwords);
+						break enter;
+					} else if (badChks[n]) {
+						if (DEBUG) System.out.println("Processing bad checksum " + n);
+						
+						if (!triedNextFletCRepl && n != nLongwords - 1 && badChks[n+1]) {
+							if (DEBUG) System.out.println("Try following fletC repl");
+							// Next checksum is also bad, so the following fletC byte could be corrupt. Try replacing it.
+							int chk = 0b111111 ^ xorCheck(lanes[n+1]);
+							if (DEBUG) System.out.print("NextFletC: " + spacer(lanes[n+1]));
+							lanes[n+1] ^= (long)chk << 24;
+							badChks[n+1] = false;
+							if (DEBUG) System.out.println(" -> " + spacer(lanes[n+1]));
+							
+							pathFixes++;
+							top = push(top, n, cost, depth, NEXT_FLETC_FRAME | chk);
+							triedNextFletCRepl = true;
+							cost += Integer.bitCount(chk);
+							depth++;
+							continue search;
+						}
+						
+						// Partial fletcher; the lanes are tried below
+						pathFixes++;
+						top = push(top, n, cost, depth, 0b111111 ^ xorCheck(lanes[n]));
+					} else {
+						if (DEBUG) System.out.println("Good checksum " + n);
+						if (!spacerFollows(n)) break enter;
+						updatePrefixCRC(n);
+						triedNextFletCRepl = false;
+						n++;
+						depth++;
+						continue search;
+					}
+				}
+				
+				// Continue from the innermost frame with an alternative left
+				while (top > 0) {
+					int f = top - FRAME;
+					n = frames[f];
+					cost = frames[f + 1];
+					depth = frames[f + 2] + 1;
+					int state = frames[f + 3];
+					int chk = state & 0b111111;
 					
-					// Revert
-					recon[n*8 + 11] ^= chk;
-					badChks[n+1] = true;
-					if (correctChecksums(badChks, true, n, fletF, fletFMask)) return true;
+					if ((state & NEXT_FLETC_FRAME) != 0) {
+						// Revert the spacer and go on without replacing it
+						pathFixes--;
+						lanes[n+1] ^= (long)chk << 24;
+						badChks[n+1] = true;
+						top = f;
+						triedNextFletCRepl = true;
+						continue search;
+					}
 					
-					return false;
-				} else {
-					// Partial fletcher
-					int chk = 0b111111;
-					for (int b = 0; b < 8; b++) {
-						chk ^= recon[b + n*8];
+					int k = state >>> 8; // Lanes already tried
+					int hints = hintLanes[n] & 0xff;
+					if (k > 0) {
+						// Revert the previous lane
+						lanes[n] ^= (long)chk << (8*lane(hints, k-1));
+						badChks[n] = true;
 					}
-					for (int b = 0; b < 8; b++) {
+					for (; k < 8; k++) {
 						// Try to replace byte with the rest of the checksum
-						if (DEBUG) System.out.print(recon[b + n*8]);
-						recon[b + n*8] ^= chk;
+						int b = lane(hints, k);
+						if (DEBUG) System.out.print((int)(lanes[n] >>> (8*b)) & 0b111111);
+						lanes[n] ^= (long)chk << (8*b);
 						badChks[n] = false;
-						if (DEBUG) System.out.println(" -> " + recon[b + n*8]);
-						//verifyFletF(fletF, fletFMask)
+						if (DEBUG) System.out.println(" -> " + ((int)(lanes[n] >>> (8*b)) & 0b111111));
 						
-						// TODO verify fletC even if no error
-						// Contains a partial fletcher followup
-						if (n != badChks.length - 1) {
-							int partial = calReconFletC((n+1)*8);
-							int cmp = recon[n*8 + 11];
-							if (DEBUG) System.out.println("FletC "+b+" " + partial);
-							if (DEBUG) System.out.println("FletC "+b+" " + cmp);
-							
-							if (partial == cmp) {
-								if (correctChecksums(badChks, false, n+1, fletF, fletFMask)) return true;
+						if (spacerFollows(n)) {
+							int crc = updatePrefixCRC(n);
+							// Contains a partial fletcher followup
+							if (n == nLongwords - 1 || partialCRC(crc) == spacer(lanes[n+1])) {
+								frames[f + 3] = chk | (k + 1) << 8;
+								triedNextFletCRepl = false;
+								n++;
+								cost += Integer.bitCount(chk);
+								continue search;
 							}
-						} else {
-							if (correctChecksums(badChks, false, n+1, fletF, fletFMask)) return true;
 						}
 						// Revert
-						recon[b + n*8] ^= chk;
+						lanes[n] ^= (long)chk << (8*b);
 						badChks[n] = true;
 					}
-					return false;
+					pathFixes--;
+					top = f; // Every lane failed
 				}
-			} else  {
-				if (DEBUG) System.out.println("Good checksum " + n);
-				return correctChecksums(badChks, false, n+1, fletF, fletFMask);
+				return false;
 			}
 		}
 		
-		private boolean verifyFletF(int fletF, int fletFMask) {
+		// The kth lane to try in a bad longword: flagged lanes first, then the rest, each in ascending order
+		private static int lane(int hints, int k) {
+			int flagged = Integer.bitCount(hints);
+			int m = k < flagged ? hints : ~hints & 0xff;
+			for (int j = k < flagged ? k : k - flagged; j > 0; j--) m &= m - 1; // Clear the lowest j lanes
+			return Integer.numberOfTrailingZeros(m);
+		}
+		
+		/*
+		 * Checks the spacer of longword n against the CRC through the longword before it.
+		 * Nothing deeper in the search changes either, so a mismatch would fail every candidate below at the full
+		 *  checksum. Checking early keeps the search linear: otherwise a wrong branch whose CRC happens to come
+		 *  back into step, or a fix in lane 7 where lane 3 gives the same CRC, repeats the search of the whole tail.
+		 */
+		private boolean spacerFollows(int n) {
+			return n == 0 || spacer(lanes[n]) == partialCRC(prefixCRC[n-1]);
+		}
+		
+		private int push(int top, int n, int cost, int depth, int state) {
+			frames[top] = n;
+			frames[top + 1] = cost;
+			frames[top + 2] = depth;
+			frames[top + 3] = state;
+			return top + FRAME;
+		}
+		
+		// Consumes one node of the correction budget; false once the budget or deadline has run out
+		private boolean spendNode() {
+			correctionNodes++;
+			if (--nodesLeft < 0 || (correctionDeadlineNanos > 0 && (nodesLeft & 0x3f) == 0 && System.nanoTime() - deadline > 0)) {
+				budgetExhausted = true;
+				return false;
+			}
+			return true;
+		}
+		
+		// Longwords before n must already have their prefix CRCs computed
+		private boolean verifyFletF(int n, int fletF, int fletFMask) {
 			if (DEBUG) System.out.println("MaskF " + Integer.toHexString(0xffff & fletFMask));
 			if (DEBUG) System.out.println("ReadF " + Integer.toHexString(0xffff & fletF));
-			int chk = crc16dnp_bit_1(CRC_INIT, recon[3]);
-			for (int r = 0; r < recon.length; r += 8) {
-				int lw = getLongword(r/8);
-				chk = crc16dnp_bit_4(chk, lw);
-				if (r + 11 < recon.length && partialCRC(chk) != recon[r + 11]) return false;
+			for (; n < nLongwords; n++) updatePrefixCRC(n);
+			for (n = 0; n < nLongwords - 1; n++) {
+				if (partialCRC(prefixCRC[n]) != spacer(lanes[n+1])) return false;
 			}
+			int chk = prefixCRC[nLongwords - 1];
 			if (DEBUG) System.out.println("MskdC " + Integer.toHexString(chk & fletFMask));
 			if (DEBUG) System.out.println("OrigC " + Integer.toHexString(chk));
 			return (chk & fletFMask) == (fletF & 0xffff);
 			
 		}
 		
-		private boolean verifyReconChk(int offset) {
-			int chk = 0;
-			for (int b = 0; b < 8; b++) {
-				chk ^= recon[b + offset];
-			}
-			return chk == 0b111111;
-		}
-		
-		private int calReconFletC(int len) {
-			int chk = crc16dnp_bit_1(CRC_INIT, recon[3]);
-			for (int r = 0; r < len; r += 8) {
-				int lw = getLongword(r/8);
-				chk = crc16dnp_bit_4(chk, lw);
-			}
-			return partialCRC(chk);
+		// Extends the running CRC through longword n, assuming the prefix before it is current
+		private int updatePrefixCRC(int n) {
+			int crc = n == 0 ? crc16dnp_tab_1(CRC_INIT, spacer(lanes[0])) : prefixCRC[n - 1];
+			return prefixCRC[n] = crc16dnp_tab_4(crc, word(lanes[n]));
 		}
 		
 		public int nLongwords() {
@@ -509,16 +1260,39 @@ public final class RECE232 {
 		}
 		
 		public byte getHeader6Bit() {
-			return (byte)recon[3];
+			return (byte)spacer(lanes[0]);
 		}
 		
 		public int getLongword(int i) {
-			return  recon[i*8 + 0] <<  0 |
-					recon[i*8 + 1] <<  5 |
-					recon[i*8 + 2] << 11 |
-					recon[i*8 + 4] << 16 |
-					recon[i*8 + 5] << 21 |
-					recon[i*8 + 6] << 27;
+			return words[i];
+		}
+		
+		/**
+		 * Copies every longword of the message into an array
+		 * @param dst Destination array, with room for {@link #nLongwords()} values
+		 * @param off Offset of the first longword in dst
+		 */
+		public void getLongwords(int[] dst, int off) {
+			if (off < 0 || dst.length - off < nLongwords) throw new IndexOutOfBoundsException();
+			System.arraycopy(words, 0, dst, off, nLongwords);
+		}
+		
+		/**
+		 * Copies every longword of the message into an array as floats
+		 * @param dst Destination array, with room for {@link #nLongwords()} values
+		 * @param off Offset of the first float in dst
+		 */
+		public void getFloats(float[] dst, int off) {
+			if (off < 0 || dst.length - off < nLongwords) throw new IndexOutOfBoundsException();
+			for (int i = 0; i < nLongwords; i++) dst[off + i] = Float.intBitsToFloat(getLongword(i));
+		}
+		
+		/**
+		 * Checks if the last message ran out of correction budget or time before the search completed
+		 * @return
+		 */
+		public boolean budgetExhausted() {
+			return budgetExhausted;
 		}
 		
 		/**
@@ -0,0 +1,239 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+
+/**
+ * Decodes many framed messages at once across a fork-join pool.
+ * Each pool thread keeps its own decoder from the factory, so decoders are created once per thread
+ *  rather than once per batch or message.
+ * Results are written in input order into a {@link Results} object, which may be reused between batches.
+ *
+ * The batch decoder may be shared between threads.
+ */
+public final class RECE232BatchDecoder {
+	
+	private static final int MIN_SLICE = 64; // Messages below which a slice isn't split further
+	
+	private final ForkJoinPool pool;
+	private final ThreadLocal<RECE232Decoder> decoders;
+	
+	RECE232BatchDecoder(Supplier<RECE232Decoder> decoderFactory, ForkJoinPool pool) {
+		this.pool = pool;
+		this.decoders = ThreadLocal.withInitial(decoderFactory);
+	}
+	
+	/**
+	 * Decoded contents of a batch, indexed by message.
+	 * The longwords of every message are packed into one array; message i starts at {@link #longwordOffset(int)}.
+	 */
+	public static final class Results {
+		private int size = 0;
+		private boolean[] decoded = new boolean[0];
+		private boolean[] corrected = new boolean[0];
+		private byte[] headers = new byte[0];
+		private int[] offsets = new int[1];
+		private int[] longwords = new int[0];
+		
+		// Lays out the arrays for a batch; a message's longword count follows from its length
+		private void prepare(List<byte[]> messages) {
+			size = messages.size();
+			if (decoded.length < size) {
+				decoded = new boolean[size];
+				corrected = new boolean[size];
+				headers = new byte[size];
+				offsets = new int[size + 1];
+			}
+			int total = 0;
+			for (int i = 0; i < size; i++) {
+				offsets[i] = total;
+				total += RECE232.longwordsIn(messages.get(i).length);
+			}
+			offsets[size] = total;
+			if (longwords.length < total) longwords = new int[total];
+		}
+		
+		private void store(int i, boolean ok, RECE232Decoder decoder) {
+			decoded[i] = ok;
+			if (ok) {
+				corrected[i] = decoder.madeCorrections();
+				headers[i] = decoder.getHeader6Bit();
+				decoder.getLongwords(longwords, offsets[i]);
+			} else {
+				corrected[i] = false;
+				headers[i] = 0;
+				Arrays.fill(longwords, offsets[i], offsets[i + 1], 0);
+			}
+		}
+		
+		/**
+		 * @return Number of messages in the batch
+		 */
+		public int size() {
+			return size;
+		}
+		
+		/**
+		 * @param i Message index
+		 * @return True if the message decoded. Other results for a message that failed are zero.
+		 */
+		public boolean isDecoded(int i) {
+			return decoded[check(i)];
+		}
+		
+		/**
+		 * @param i Message index
+		 * @return True if the message decoded after error correction
+		 */
+		public boolean madeCorrections(int i) {
+			return corrected[check(i)];
+		}
+		
+		/**
+		 * @param i Message index
+		 * @return The message header
+		 */
+		public byte getHeader6Bit(int i) {
+			return headers[check(i)];
+		}
+		
+		/**
+		 * @param i Message index
+		 * @return Number of longwords in the message
+		 */
+		public int nLongwords(int i) {
+			check(i);
+			return offsets[i + 1] - offsets[i];
+		}
+		
+		/**
+		 * @param i Message index
+		 * @param j Longword index within the message
+		 * @return The longword
+		 */
+		public int getLongword(int i, int j) {
+			if (j < 0 || j >= nLongwords(i)) throw new IndexOutOfBoundsException();
+			return longwords[offsets[i] + j];
+		}
+		
+		/**
+		 * @param i Message index
+		 * @return Index of the message's first longword in {@link #longwords()}
+		 */
+		public int longwordOffset(int i) {
+			return offsets[check(i)];
+		}
+		
+		/**
+		 * @return The longwords of every message, packed in input order. The array may be longer than needed.
+		 */
+		public int[] longwords() {
+			return longwords;
+		}
+		
+		/**
+		 * @return Number of messages that decoded
+		 */
+		public int decodedCount() {
+			int n = 0;
+			for (int i = 0; i < size; i++) if (decoded[i]) n++;
+			return n;
+		}
+		
+		private int check(int i) {
+			if (i < 0 || i >= size) throw new IndexOutOfBoundsException();
+			return i;
+		}
+	}
+	
+	/**
+	 * Decodes a batch of messages into new results
+	 * @param messages Messages, each excluding delimiters
+	 * @return Results in input order
+	 */
+	public Results decode(byte[][] messages) {
+		return decode(Arrays.asList(messages), new Results());
+	}
+	
+	/**
+	 * Decodes a batch of messages into new results
+	 * @param messages Messages, each excluding delimiters; the list should support fast random access
+	 * @return Results in input order
+	 */
+	public Results decode(List<byte[]> messages) {
+		return decode(messages, new Results());
+	}
+	
+	/**
+	 * Decodes a batch of messages, reusing the arrays of earlier results where they are large enough
+	 * @param messages Messages, each excluding delimiters; the list should support fast random access
+	 * @param results Results to overwrite
+	 * @return The results object, in input order
+	 */
+	public Results decode(List<byte[]> messages, Results results) {
+		results.prepare(messages);
+		int slice = Math.max(MIN_SLICE, messages.size() / (pool.getParallelism() * 8));
+		pool.invoke(new Slice(messages, results, 0, messages.size(), slice));
+		return results;
+	}
+	
+	private final class Slice extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final List<byte[]> messages;
+		private final Results results;
+		private final int from, to, slice;
+		
+		Slice(List<byte[]> messages, Results results, int from, int to, int slice) {
+			this.messages = messages;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+			this.slice = slice;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from > slice) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Slice(messages, results, from, mid, slice), new Slice(messages, results, mid, to, slice));
+				return;
+			}
+			RECE232Decoder decoder = decoders.get();
+			for (int i = from; i < to; i++) {
+				results.store(i, decoder.load(messages.get(i)), decoder);
+			}
+		}
+	}
+}
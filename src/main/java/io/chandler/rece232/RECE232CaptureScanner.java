@@ -0,0 +1,251 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+
+/**
+ * Decodes newline-delimited capture files in parallel by memory-mapping them in chunks.
+ * Each chunk owns the lines that start inside it and maps enough of the next chunk to finish its last line,
+ *  so chunks are decoded independently without a pass to find line boundaries first.
+ * Lines are decoded straight from the mapped buffers; a trailing carriage return is ignored, blank lines are skipped,
+ *  and runs longer than the maximum message length are counted and dropped, as in {@link RECE232StreamDecoder}.
+ *
+ * The scanner may be shared between threads.
+ */
+public final class RECE232CaptureScanner {
+	
+	/**
+	 * Receives decoded messages from the pool threads. Calls for different chunks may run concurrently and in any order.
+	 */
+	public interface FrameHandler {
+		/**
+		 * Called for each message that decodes successfully
+		 * @param position File offset of the line
+		 * @param decoder Decoder holding the message; its contents are only valid until the handler returns
+		 */
+		void onFrame(long position, RECE232Decoder decoder);
+		
+		/**
+		 * Called for each line that fails to decode, except for overlong runs
+		 * @param position File offset of the line
+		 * @param line Buffer positioned at the line, excluding delimiters; only valid until the handler returns
+		 */
+		default void onRejected(long position, ByteBuffer line) { }
+	}
+	
+	/**
+	 * Totals for a scan
+	 */
+	public static final class Stats {
+		private long bytes, goodFrames, correctedFrames, rejectedFrames, overlongFrames;
+		
+		private synchronized void add(Stats s) {
+			bytes += s.bytes;
+			goodFrames += s.goodFrames;
+			correctedFrames += s.correctedFrames;
+			rejectedFrames += s.rejectedFrames;
+			overlongFrames += s.overlongFrames;
+		}
+		
+		/**
+		 * @return Size of the file in bytes
+		 */
+		public long bytes() {
+			return bytes;
+		}
+		
+		/**
+		 * @return Number of messages that decoded without corrections
+		 */
+		public long goodFrames() {
+			return goodFrames;
+		}
+		
+		/**
+		 * @return Number of messages that decoded after error correction
+		 */
+		public long correctedFrames() {
+			return correctedFrames;
+		}
+		
+		/**
+		 * @return Number of lines that failed to decode
+		 */
+		public long rejectedFrames() {
+			return rejectedFrames;
+		}
+		
+		/**
+		 * @return Number of runs dropped for exceeding the maximum message length
+		 */
+		public long overlongFrames() {
+			return overlongFrames;
+		}
+	}
+	
+	private static final FrameHandler NO_HANDLER = (position, decoder) -> { };
+	
+	private final ForkJoinPool pool;
+	private final ThreadLocal<RECE232Decoder> decoders;
+	private final int maxFrameLength;
+	private int chunkSize = 64 << 20;
+	
+	RECE232CaptureScanner(Supplier<RECE232Decoder> decoderFactory, int maxLongwords, ForkJoinPool pool) {
+		if (maxLongwords <= 0) throw new IllegalArgumentException("Must allow at least one longword");
+		this.pool = pool;
+		this.decoders = ThreadLocal.withInitial(decoderFactory);
+		this.maxFrameLength = RECE232.messageLength(maxLongwords);
+	}
+	
+	/**
+	 * Sets the number of bytes mapped and decoded by each task
+	 * @param bytes Chunk size. Default is 64 MiB.
+	 * @return
+	 */
+	public RECE232CaptureScanner setChunkSize(int bytes) {
+		if (bytes <= 0 || bytes > Integer.MAX_VALUE - maxFrameLength - 3) throw new IllegalArgumentException("Invalid chunk size");
+		this.chunkSize = bytes;
+		return this;
+	}
+	
+	/**
+	 * Decodes every line of a capture file and totals the results
+	 * @param file Capture file
+	 * @return Totals for the file
+	 * @throws IOException
+	 */
+	public Stats scan(Path file) throws IOException {
+		return scan(file, NO_HANDLER);
+	}
+	
+	/**
+	 * Decodes every line of a capture file, passing each message to a handler
+	 * @param file Capture file
+	 * @param handler Receives messages from the pool threads
+	 * @return Totals for the file
+	 * @throws IOException
+	 */
+	public Stats scan(Path file, FrameHandler handler) throws IOException {
+		Stats total = new Stats();
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = ch.size();
+			total.bytes = size;
+			List<ForkJoinTask<?>> tasks = new ArrayList<>();
+			for (long start = 0; start < size; start += chunkSize) {
+				long chunkStart = start;
+				tasks.add(ForkJoinTask.adapt(() -> {
+					try {
+						total.add(scanChunk(ch, size, chunkStart, Math.min(size, chunkStart + chunkSize), handler));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}));
+			}
+			try {
+				pool.invoke(ForkJoinTask.adapt(() -> { ForkJoinTask.invokeAll(tasks); }));
+			} catch (RuntimeException e) {
+				// The pool may rethrow a copy that wraps the original, so look down the whole chain
+				for (Throwable t = e; t != null; t = t.getCause()) {
+					if (t instanceof UncheckedIOException) throw ((UncheckedIOException)t).getCause();
+				}
+				throw e;
+			}
+		}
+		return total;
+	}
+	
+	// Decodes the lines that start in [start, end)
+	private Stats scanChunk(FileChannel ch, long size, long start, long end, FrameHandler handler) throws IOException {
+		Stats s = new Stats();
+		long base = Math.max(0, start - 1); // Include the byte before the chunk to tell if a line starts on its first byte
+		long limit = Math.min(size, end + maxFrameLength + 2);
+		MappedByteBuffer map = ch.map(MapMode.READ_ONLY, base, limit - base);
+		ByteBuffer line = map.duplicate();
+		RECE232Decoder decoder = decoders.get();
+		
+		int len = (int)(limit - base);
+		int owned = (int)(end - base); // Lines must start before this index
+		int window = maxFrameLength + 2; // Longest run that may still hold a message and its delimiters
+		
+		int i = start == 0 ? 0 : next(map, 0, owned);
+		while (i < owned) {
+			int nl = next(map, i, Math.min(len, i + window)) - 1;
+			if (nl < Math.min(len, i + window)) { // Delimited line
+				frame(map, line, base, i, nl, decoder, handler, s);
+				i = nl + 1;
+			} else if (limit == size && len - i < window) { // Unterminated line at the end of the file
+				frame(map, line, base, i, len, decoder, handler, s);
+				break;
+			} else {
+				s.overlongFrames++;
+				i = next(map, i + window, owned);
+			}
+		}
+		return s;
+	}
+	
+	// Index after the next newline in [from, to), or to + 1 if there is none
+	private static int next(ByteBuffer map, int from, int to) {
+		for (int i = from; i < to; i++) if (map.get(i) == '\n') return i + 1;
+		return to + 1;
+	}
+	
+	private void frame(ByteBuffer map, ByteBuffer line, long base, int from, int to,
+			RECE232Decoder decoder, FrameHandler handler, Stats s) {
+		if (to > from && map.get(to - 1) == '\r') to--;
+		int len = to - from;
+		if (len == 0) return; // Blank line
+		if (len > maxFrameLength) {
+			s.overlongFrames++;
+			return;
+		}
+		line.limit(to).position(from);
+		if (decoder.load(line)) {
+			if (decoder.madeCorrections()) s.correctedFrames++;
+			else s.goodFrames++;
+			handler.onFrame(base + from, decoder);
+		} else {
+			s.rejectedFrames++;
+			handler.onRejected(base + from, line);
+		}
+	}
+}
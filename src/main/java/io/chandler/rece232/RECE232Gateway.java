@@ -0,0 +1,351 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+
+/**
+ * Accepts TCP connections carrying newline-delimited RECE-232 streams, as from terminal servers with one raw
+ *  socket per serial line, and publishes every decoded message to one shared sink.
+ * Each connection is read with blocking calls on its own thread through a {@link RECE232StreamDecoder} with its
+ *  own decoder. On Java 21 and later the threads are virtual, so hundreds of idle lines cost little;
+ *  earlier versions fall back to daemon platform threads with a small stack.
+ *
+ * The gateway may be shared between threads.
+ */
+public final class RECE232Gateway implements Closeable {
+	
+	/**
+	 * Receives decoded messages from every connection. Calls from different connections run concurrently.
+	 * An exception thrown by the sink is counted by {@link RECE232Gateway#sinkFailures()} and kept as
+	 *  {@link RECE232Gateway#lastSinkFailure()}, and the connection goes on being served.
+	 */
+	public interface FrameSink {
+		/**
+		 * Called for each message that decodes successfully
+		 * @param source Remote address of the connection
+		 * @param decoder Decoder holding the message; its contents are only valid until the sink returns
+		 */
+		void onFrame(SocketAddress source, RECE232Decoder decoder);
+		
+		/**
+		 * Called for each line that fails to decode, except for overlong runs
+		 * @param source Remote address of the connection
+		 * @param line Buffer containing the line
+		 * @param off Offset of the line
+		 * @param len Length of the line, excluding delimiters
+		 */
+		default void onRejected(SocketAddress source, byte[] line, int off, int len) { }
+	}
+	
+	private static final ThreadFactory VIRTUAL_THREADS = virtualThreadFactory();
+	private static final int BACKLOG = 1024; // Terminal servers tend to reconnect every line at once
+	private static final long PLATFORM_STACK_SIZE = 256 << 10; // Decoding doesn't recurse
+	
+	private final Supplier<RECE232Decoder> decoderFactory;
+	private final int maxLongwords;
+	private final FrameSink sink;
+	private ThreadFactory threadFactory = VIRTUAL_THREADS != null ? VIRTUAL_THREADS : new PlatformThreads();
+	
+	private ServerSocketChannel server;
+	private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+	private final LongAdder acceptedConnections = new LongAdder(), bytesReceived = new LongAdder();
+	private final LongAdder goodFrames = new LongAdder(), correctedFrames = new LongAdder();
+	private final LongAdder rejectedFrames = new LongAdder(), overlongFrames = new LongAdder();
+	private final LongAdder sinkFailures = new LongAdder(), acceptErrors = new LongAdder();
+	private volatile RuntimeException lastSinkFailure;
+	private volatile IOException lastAcceptError;
+	private volatile Throwable acceptFailure;
+	
+	RECE232Gateway(Supplier<RECE232Decoder> decoderFactory, int maxLongwords, FrameSink sink) {
+		if (maxLongwords <= 0) throw new IllegalArgumentException("Must allow at least one longword");
+		this.decoderFactory = decoderFactory;
+		this.maxLongwords = maxLongwords;
+		this.sink = sink;
+	}
+	
+	// Thread.ofVirtual().name("rece232-gateway-", 0).factory() where it exists, or null
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			Object b = Thread.class.getMethod("ofVirtual").invoke(null);
+			b = builder.getMethod("name", String.class, long.class).invoke(b, "rece232-gateway-", 0L);
+			return (ThreadFactory) builder.getMethod("factory").invoke(b);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null; // Before Java 21, or a preview that isn't enabled
+		}
+	}
+	
+	private static final class PlatformThreads implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(null, r, "rece232-gateway-" + count.getAndIncrement(), PLATFORM_STACK_SIZE);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+	
+	/**
+	 * @return True if this runtime supports virtual threads, which the gateway uses by default
+	 */
+	public static boolean virtualThreadsAvailable() {
+		return VIRTUAL_THREADS != null;
+	}
+	
+	/**
+	 * Sets the factory for the accept thread and the thread of each connection
+	 * @param threadFactory Thread factory. Default is virtual threads where available, otherwise daemon platform threads.
+	 * @return
+	 */
+	public RECE232Gateway setThreadFactory(ThreadFactory threadFactory) {
+		if (server != null) throw new IllegalStateException("Gateway already started");
+		this.threadFactory = threadFactory;
+		return this;
+	}
+	
+	/**
+	 * Binds the listening socket and starts accepting connections
+	 * @param address Local address to listen on; port 0 picks a free port
+	 * @return The bound address
+	 * @throws IOException
+	 */
+	public synchronized InetSocketAddress start(InetSocketAddress address) throws IOException {
+		if (server != null) throw new IllegalStateException("Gateway already started");
+		server = ServerSocketChannel.open();
+		try {
+			server.bind(address, BACKLOG);
+			threadFactory.newThread(this::accept).start();
+		} catch (IOException | RuntimeException e) {
+			server.close();
+			throw e;
+		}
+		return (InetSocketAddress) server.getLocalAddress();
+	}
+	
+	private void accept() {
+		while (true) {
+			SocketChannel ch;
+			try {
+				ch = server.accept();
+			} catch (IOException e) {
+				if (!server.isOpen()) return;
+				lastAcceptError = e;
+				acceptErrors.increment();
+				LockSupport.parkNanos(10_000_000); // Likely out of file descriptors; give connections a chance to close
+				continue;
+			}
+			acceptedConnections.increment();
+			connections.add(ch);
+			if (!server.isOpen()) { // Raced with close()
+				connections.remove(ch);
+				closeQuietly(ch);
+				return;
+			}
+			try {
+				threadFactory.newThread(() -> serve(ch)).start();
+			} catch (RuntimeException | Error e) {
+				// Can't serve any more connections, as when out of threads; stop accepting rather than hide it
+				acceptFailure = e;
+				connections.remove(ch);
+				closeQuietly(ch);
+				try {
+					server.close();
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+				throw e;
+			}
+		}
+	}
+	
+	private void serve(SocketChannel ch) {
+		try {
+			SocketAddress source = ch.getRemoteAddress();
+			RECE232StreamDecoder stream = new RECE232StreamDecoder(decoderFactory.get(), maxLongwords, new RECE232StreamDecoder.FrameHandler() {
+				@Override
+				public void onFrame(RECE232Decoder decoder) {
+					if (decoder.madeCorrections()) correctedFrames.increment();
+					else goodFrames.increment();
+					try {
+						sink.onFrame(source, decoder);
+					} catch (RuntimeException e) {
+						sinkFailed(e);
+					}
+				}
+				
+				@Override
+				public void onRejected(byte[] line, int off, int len) {
+					rejectedFrames.increment();
+					try {
+						sink.onRejected(source, line, off, len);
+					} catch (RuntimeException e) {
+						sinkFailed(e);
+					}
+				}
+			});
+			int n;
+			while ((n = stream.read(ch)) >= 0) {
+				bytesReceived.add(n);
+				if (stream.overlongFrames() != 0) {
+					overlongFrames.add(stream.overlongFrames());
+					stream.resetCounters();
+				}
+			}
+			stream.finish();
+			overlongFrames.add(stream.overlongFrames()); // An unterminated line at the end may be overlong too
+		} catch (IOException e) {
+			// Reset by the peer, or closed by the gateway
+		} finally {
+			connections.remove(ch);
+			closeQuietly(ch);
+		}
+	}
+	
+	private void sinkFailed(RuntimeException e) {
+		lastSinkFailure = e;
+		sinkFailures.increment();
+	}
+	
+	/**
+	 * Stops accepting connections and closes every open connection
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (server == null) return;
+		server.close();
+		for (SocketChannel ch : connections) closeQuietly(ch);
+	}
+	
+	private static void closeQuietly(SocketChannel ch) {
+		try {
+			ch.close();
+		} catch (IOException e) {
+			// Nothing left to do with it
+		}
+	}
+	
+	/**
+	 * @return Number of connections currently open
+	 */
+	public int activeConnections() {
+		return connections.size();
+	}
+	
+	/**
+	 * @return Number of connections accepted since the gateway started
+	 */
+	public long acceptedConnections() {
+		return acceptedConnections.sum();
+	}
+	
+	/**
+	 * @return Number of bytes read from all connections
+	 */
+	public long bytesReceived() {
+		return bytesReceived.sum();
+	}
+	
+	/**
+	 * @return Number of messages that decoded without corrections
+	 */
+	public long goodFrames() {
+		return goodFrames.sum();
+	}
+	
+	/**
+	 * @return Number of messages that decoded after error correction
+	 */
+	public long correctedFrames() {
+		return correctedFrames.sum();
+	}
+	
+	/**
+	 * @return Number of lines that failed to decode
+	 */
+	public long rejectedFrames() {
+		return rejectedFrames.sum();
+	}
+	
+	/**
+	 * @return Number of runs dropped for exceeding the maximum message length
+	 */
+	public long overlongFrames() {
+		return overlongFrames.sum();
+	}
+	
+	/**
+	 * @return Number of exceptions thrown by the sink
+	 */
+	public long sinkFailures() {
+		return sinkFailures.sum();
+	}
+	
+	/**
+	 * @return The most recent exception thrown by the sink, or null if it never threw
+	 */
+	public RuntimeException lastSinkFailure() {
+		return lastSinkFailure;
+	}
+	
+	/**
+	 * @return Number of failed accepts that were retried, as when out of file descriptors
+	 */
+	public long acceptErrors() {
+		return acceptErrors.sum();
+	}
+	
+	/**
+	 * @return The most recent failed accept that was retried, or null if none failed
+	 */
+	public IOException lastAcceptError() {
+		return lastAcceptError;
+	}
+	
+	/**
+	 * @return The exception that stopped the gateway from accepting connections, as when a connection thread
+	 *  couldn't start, or null if it is still accepting or was closed
+	 */
+	public Throwable acceptFailure() {
+		return acceptFailure;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+
+/**
+ * Decoder statistics, collected from every decoder the metrics are attached to with
+ *  {@link RECE232Decoder#setMetrics(RECE232Metrics)}.
+ * Counts cover the work done for each message; correction counts only include messages that decoded.
+ * Latency is kept in a histogram of power-of-two buckets.
+ *
+ * Metrics may be shared by decoders on different threads, and can be published over JMX with {@link #register(String)}.
+ */
+public final class RECE232Metrics implements RECE232MetricsMXBean {
+	
+	/**
+	 * Receives the outcome of each message, on the thread that decoded it
+	 */
+	public interface Listener {
+		/**
+		 * @param decoded True if the message decoded
+		 * @param latencyNanos Time spent in load
+		 * @param correctionNodes Number of correction search nodes visited
+		 */
+		void onMessage(boolean decoded, long latencyNanos, int correctionNodes);
+	}
+	
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder decoded = new LongAdder();
+	private final LongAdder corrected = new LongAdder();
+	private final LongAdder partialChecksum = new LongAdder();
+	private final LongAdder budgetExhausted = new LongAdder();
+	private final LongAdder gapBranches = new LongAdder();
+	private final LongAdder correctionNodes = new LongAdder();
+	private final LongAccumulator maxCorrectionDepth = new LongAccumulator(Math::max, 0);
+	private final LongAdder gapsFilled = new LongAdder();
+	private final LongAdder bytesCorrected = new LongAdder();
+	private final LongAdder totalLatency = new LongAdder();
+	private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0);
+	private final AtomicLongArray latency = new AtomicLongArray(64); // Bucket b counts latencies below 2^b ns
+	
+	private volatile Listener listener = null;
+	
+	/**
+	 * Sets a listener to be called after every message
+	 * @param listener Listener, or null for none
+	 * @return
+	 */
+	public RECE232Metrics setListener(Listener listener) {
+		this.listener = listener;
+		return this;
+	}
+	
+	/**
+	 * Publishes the metrics on the platform MBean server
+	 * @param name Name to distinguish this link from others
+	 * @return The registered object name
+	 * @throws JMException
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("io.chandler.rece232:type=Decoder,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+	
+	void record(RECE232Decoder d, boolean ok, long nanos) {
+		messages.increment();
+		gapBranches.add(d.gapBranches);
+		correctionNodes.add(d.correctionNodes);
+		maxCorrectionDepth.accumulate(d.maxCorrectionDepth);
+		if (d.partialChecksum) partialChecksum.increment();
+		if (d.budgetExhausted()) budgetExhausted.increment();
+		if (ok) {
+			decoded.increment();
+			if (d.madeCorrections()) corrected.increment();
+			gapsFilled.add(d.gapsFilled);
+			bytesCorrected.add(d.bytesCorrected);
+		}
+		totalLatency.add(nanos);
+		maxLatency.accumulate(nanos);
+		latency.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+		
+		Listener l = listener;
+		if (l != null) l.onMessage(ok, nanos, d.correctionNodes);
+	}
+	
+	/**
+	 * @return Number of messages loaded
+	 */
+	@Override public long getMessages() { return messages.sum(); }
+	
+	/**
+	 * @return Number of messages that decoded
+	 */
+	@Override public long getDecodedMessages() { return decoded.sum(); }
+	
+	/**
+	 * @return Number of messages that decoded after error correction
+	 */
+	@Override public long getCorrectedMessages() { return corrected.sum(); }
+	
+	/**
+	 * @return Number of messages that failed to decode
+	 */
+	@Override public long getFailedMessages() { return getMessages() - getDecodedMessages(); }
+	
+	/**
+	 * @return Number of messages with one footer character missing, checked against a partial mask
+	 */
+	@Override public long getPartialChecksumMessages() { return partialChecksum.sum(); }
+	
+	/**
+	 * @return Number of messages that ran out of correction budget or time
+	 */
+	@Override public long getBudgetExhaustedMessages() { return budgetExhausted.sum(); }
+	
+	/**
+	 * @return Number of characters that could have been either a dropped or a corrupt character
+	 */
+	@Override public long getGapBranches() { return gapBranches.sum(); }
+	
+	/**
+	 * @return Number of checksum correction search nodes visited
+	 */
+	@Override public long getCorrectionNodes() { return correctionNodes.sum(); }
+	
+	/**
+	 * @return Deepest checksum correction search of any message
+	 */
+	@Override public long getMaxCorrectionDepth() { return maxCorrectionDepth.get(); }
+	
+	/**
+	 * @return Number of dropped characters restored in decoded messages
+	 */
+	@Override public long getGapsFilled() { return gapsFilled.sum(); }
+	
+	/**
+	 * @return Number of corrupt characters replaced in decoded messages
+	 */
+	@Override public long getBytesCorrected() { return bytesCorrected.sum(); }
+	
+	/**
+	 * @return Mean time spent in load
+	 */
+	@Override public long getMeanLatencyNanos() {
+		long n = getMessages();
+		return n == 0 ? 0 : totalLatency.sum() / n;
+	}
+	
+	/**
+	 * @return Longest time spent in load
+	 */
+	@Override public long getMaxLatencyNanos() { return maxLatency.get(); }
+	
+	/**
+	 * @return Upper bound of the latency histogram bucket holding the 99th percentile
+	 */
+	@Override public long getLatencyP99Nanos() {
+		long[] h = getLatencyHistogram();
+		long total = 0;
+		for (long c : h) total += c;
+		long seen = 0;
+		for (int b = 0; b < h.length; b++) {
+			seen += h[b];
+			if (seen * 100 >= total * 99 && seen > 0) return b == 63 ? Long.MAX_VALUE : 1L << b;
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return Message counts by latency; element b counts latencies from 2^(b-1) up to 2^b nanoseconds
+	 */
+	@Override public long[] getLatencyHistogram() {
+		long[] h = new long[latency.length()];
+		for (int b = 0; b < h.length; b++) h[b] = latency.get(b);
+		return h;
+	}
+	
+	/**
+	 * Sets every count back to zero. Messages being recorded at the same time may be partly counted.
+	 */
+	@Override public void reset() {
+		messages.reset();
+		decoded.reset();
+		corrected.reset();
+		partialChecksum.reset();
+		budgetExhausted.reset();
+		gapBranches.reset();
+		correctionNodes.reset();
+		maxCorrectionDepth.reset();
+		gapsFilled.reset();
+		bytesCorrected.reset();
+		totalLatency.reset();
+		maxLatency.reset();
+		for (int b = 0; b < latency.length(); b++) latency.set(b, 0);
+	}
+}
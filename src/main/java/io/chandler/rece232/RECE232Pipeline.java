@@ -0,0 +1,473 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+
+/**
+ * Moves decoding off the thread that reads a port, so a burst of noisy lines can't stall the reads and overrun
+ *  the receive buffer.
+ * The reader thread feeds raw bytes, which are framed on newlines and copied straight into a preallocated ring of
+ *  line slots. Decode workers, each with its own decoder, take every Nth slot and write the result into the slot.
+ *  A consumer thread hands results to the handler in the order the lines arrived.
+ *
+ * The stages share only sequence counters: the reader publishes slots, each slot records the sequence of its
+ *  finished result, and the consumer releases slots for reuse. There are no locks and nothing is allocated per
+ *  message. A full ring makes the reader wait, and idle stages wait by the configured {@link WaitStrategy}.
+ * Framing follows {@link RECE232StreamDecoder}: a trailing carriage return is ignored, blank lines are skipped,
+ *  and runs longer than the maximum message length are dropped up to the next newline.
+ *
+ * Only one thread may feed the pipeline. Counters are exact once {@link #close()} returns.
+ */
+public final class RECE232Pipeline implements AutoCloseable {
+	
+	/**
+	 * How a stage waits for the one before or after it
+	 */
+	public enum WaitStrategy {
+		/** Busy-spins; lowest latency, but every waiting thread holds a core */
+		SPIN,
+		/** Spins briefly, then yields between checks */
+		YIELD,
+		/** Spins and yields briefly, then parks for short intervals; least CPU when idle */
+		PARK;
+		
+		private static final int SPINS = 100, YIELDS = 100;
+		private static final long PARK_NANOS = 50_000;
+		
+		// Called after the nth consecutive failed check
+		void idle(int n) {
+			if (this == SPIN || n < SPINS) return;
+			if (this == YIELD || n < SPINS + YIELDS) Thread.yield();
+			else LockSupport.parkNanos(PARK_NANOS);
+		}
+	}
+	
+	/**
+	 * Receives results on the consumer thread, in the order the lines were fed
+	 */
+	public interface FrameHandler {
+		/**
+		 * Called for each message that decodes successfully
+		 * @param frame Decoded message; only valid until the handler returns
+		 */
+		void onFrame(Frame frame);
+		
+		/**
+		 * Called for each line that fails to decode or whose decoder threw, except for overlong runs
+		 * @param frame Slot holding the line; only valid until the handler returns
+		 */
+		default void onRejected(Frame frame) { }
+	}
+	
+	/**
+	 * A ring slot: a framed line and, once a worker has finished with it, the decoded message
+	 */
+	public static final class Frame {
+		private final byte[] line;
+		private final int[] longwords;
+		private int length;
+		private long sequence;
+		private boolean decoded, corrected;
+		private byte header;
+		private int nLongwords;
+		private volatile long ready = -1; // Sequence of the result in this slot
+		
+		private Frame(int maxFrameLength, int maxLongwords) {
+			this.line = new byte[maxFrameLength + 1]; // Room for a carriage return
+			this.longwords = new int[maxLongwords];
+		}
+		
+		/**
+		 * @return Position of the line in the stream, counting from 0 and skipping blank lines and overlong runs
+		 */
+		public long sequence() {
+			return sequence;
+		}
+		
+		/**
+		 * @return Array holding the line from index 0, excluding delimiters
+		 */
+		public byte[] line() {
+			return line;
+		}
+		
+		/**
+		 * @return Length of the line
+		 */
+		public int length() {
+			return length;
+		}
+		
+		/**
+		 * Checks if the decoder corrected errors in the message
+		 * @return
+		 */
+		public boolean madeCorrections() {
+			return corrected;
+		}
+		
+		public byte getHeader6Bit() {
+			return header;
+		}
+		
+		public int nLongwords() {
+			return nLongwords;
+		}
+		
+		public int getLongword(int i) {
+			if (i >= nLongwords) throw new IndexOutOfBoundsException();
+			return longwords[i];
+		}
+		
+		/**
+		 * Copies every longword of the message into an array
+		 * @param dst Destination array, with room for {@link #nLongwords()} values
+		 * @param off Offset of the first longword in dst
+		 */
+		public void getLongwords(int[] dst, int off) {
+			System.arraycopy(longwords, 0, dst, off, nLongwords);
+		}
+	}
+	
+	private final Supplier<RECE232Decoder> decoderFactory;
+	private final int maxLongwords, maxFrameLength;
+	private final FrameHandler handler;
+	private int capacity = 1024;
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private WaitStrategy waitStrategy = WaitStrategy.PARK;
+	
+	private Frame[] ring;
+	private int mask;
+	private Thread[] threads;
+	
+	// Sequences shared between stages
+	private volatile long published = 0;          // Lines handed to the workers
+	private volatile long consumed = 0;           // Results passed to the handler, whose slots may be reused
+	private volatile long end = Long.MAX_VALUE;   // Total lines, once closed
+	private final AtomicReference<Throwable> failure = new AtomicReference<>(); // First exception from a decoder or the handler
+	
+	// Reader state
+	private long next = 0, cachedConsumed = 0;
+	private Frame current;
+	private int pos = 0;
+	private boolean discarding = false; // Dropping an overlong run until the next delimiter
+	private long overlongFrames, stalls;
+	
+	// Consumer state
+	private long goodFrames, correctedFrames, rejectedFrames;
+	
+	RECE232Pipeline(Supplier<RECE232Decoder> decoderFactory, int maxLongwords, FrameHandler handler) {
+		if (maxLongwords <= 0) throw new IllegalArgumentException("Must allow at least one longword");
+		this.decoderFactory = decoderFactory;
+		this.maxLongwords = maxLongwords;
+		this.maxFrameLength = RECE232.messageLength(maxLongwords);
+		this.handler = handler;
+	}
+	
+	/**
+	 * Sets the number of line slots in the ring
+	 * @param slots Ring size, a power of two. Default is 1024.
+	 * @return
+	 */
+	public RECE232Pipeline setCapacity(int slots) {
+		if (slots <= 0 || Integer.bitCount(slots) != 1) throw new IllegalArgumentException("Capacity must be a power of two");
+		checkNotStarted();
+		this.capacity = slots;
+		return this;
+	}
+	
+	/**
+	 * Sets the number of decode workers
+	 * @param workers Worker threads. Default is the number of processors.
+	 * @return
+	 */
+	public RECE232Pipeline setWorkers(int workers) {
+		if (workers <= 0) throw new IllegalArgumentException("Must have at least one worker");
+		checkNotStarted();
+		this.workers = workers;
+		return this;
+	}
+	
+	/**
+	 * Sets how each stage waits when there's nothing to do, or the reader when the ring is full
+	 * @param waitStrategy Wait strategy. Default is {@link WaitStrategy#PARK}.
+	 * @return
+	 */
+	public RECE232Pipeline setWaitStrategy(WaitStrategy waitStrategy) {
+		checkNotStarted();
+		this.waitStrategy = waitStrategy;
+		return this;
+	}
+	
+	private void checkNotStarted() {
+		if (ring != null) throw new IllegalStateException("Pipeline already started");
+	}
+	
+	/**
+	 * Allocates the ring and starts the worker and consumer threads
+	 * @return
+	 */
+	public RECE232Pipeline start() {
+		checkNotStarted();
+		ring = new Frame[capacity];
+		for (int i = 0; i < capacity; i++) ring[i] = new Frame(maxFrameLength, maxLongwords);
+		mask = capacity - 1;
+		
+		threads = new Thread[workers + 1];
+		for (int w = 0; w < workers; w++) {
+			RECE232Decoder decoder = decoderFactory.get();
+			int first = w;
+			threads[w] = new Thread(() -> decode(decoder, first), "rece232-pipeline-decode-" + w);
+		}
+		threads[workers] = new Thread(this::consume, "rece232-pipeline-consume");
+		for (Thread t : threads) {
+			t.setDaemon(true);
+			t.start();
+		}
+		return this;
+	}
+	
+	/**
+	 * Frames bytes from the port and queues each complete line, waiting while the ring is full
+	 * @param src Source array
+	 * @param off Offset of the first byte
+	 * @param len Number of bytes
+	 */
+	public void feed(byte[] src, int off, int len) {
+		checkFeeding();
+		int end = off + len;
+		while (off < end) {
+			int nl = off;
+			while (nl < end && src[nl] != '\n') nl++;
+			if (nl > off && reserve(nl - off)) {
+				System.arraycopy(src, off, current.line, pos, nl - off);
+				pos += nl - off;
+			}
+			if (nl == end) break;
+			endLine();
+			off = nl + 1;
+		}
+	}
+	
+	/**
+	 * Frames the remaining bytes of a buffer, advancing its position to its limit
+	 * @param src Source buffer
+	 */
+	public void feed(ByteBuffer src) {
+		checkFeeding();
+		while (src.hasRemaining()) {
+			int off = src.position(), end = src.limit();
+			int nl = off;
+			while (nl < end && src.get(nl) != '\n') nl++;
+			if (nl > off && reserve(nl - off)) {
+				src.get(current.line, pos, nl - off);
+				pos += nl - off;
+			} else {
+				src.position(nl);
+			}
+			if (nl == end) break;
+			src.get(); // Delimiter
+			endLine();
+		}
+	}
+	
+	private void checkFeeding() {
+		if (ring == null) throw new IllegalStateException("Pipeline not started");
+		if (threads == null) throw new IllegalStateException("Pipeline closed"); // No worker would ever free a slot
+	}
+	
+	// Makes room for n more bytes of the current line, claiming a slot at the start of a line; false to drop them
+	private boolean reserve(int n) {
+		if (discarding) return false;
+		if (pos + n > current().line.length) { // Can't be a message, even with a carriage return
+			overlongFrames++;
+			discarding = true;
+			pos = 0;
+			return false;
+		}
+		return true;
+	}
+	
+	// Slot for the line being framed, waiting for the consumer to release it if the ring is full
+	private Frame current() {
+		if (current == null) {
+			if (next - cachedConsumed >= capacity) {
+				stalls++;
+				for (int n = 0; next - (cachedConsumed = consumed) >= capacity; n++) waitStrategy.idle(n);
+			}
+			current = ring[(int)next & mask];
+		}
+		return current;
+	}
+	
+	private void endLine() {
+		if (discarding) { // Tail of an overlong run
+			discarding = false;
+			return;
+		}
+		int len = pos;
+		pos = 0;
+		if (len > 0 && current.line[len - 1] == '\r') len--;
+		if (len == 0) return; // Blank line
+		if (len > maxFrameLength) {
+			overlongFrames++;
+			return;
+		}
+		current.length = len;
+		current.sequence = next;
+		current = null;
+		published = ++next;
+	}
+	
+	/**
+	 * Queues any bytes that were not followed by a delimiter, as at the end of a stream
+	 */
+	public void finish() {
+		checkFeeding();
+		if (pos > 0 || discarding) endLine();
+	}
+	
+	// Decodes sequences first, first + workers, ...
+	private void decode(RECE232Decoder decoder, long first) {
+		long avail = 0;
+		for (long seq = first;; seq += workers) {
+			for (int n = 0; seq >= avail; n++) {
+				if (seq >= (avail = published) && seq >= end) return; // Check the end after the last publish
+				if (seq >= avail) waitStrategy.idle(n);
+			}
+			Frame f = ring[(int)seq & mask];
+			try {
+				f.decoded = decoder.load(f.line, 0, f.length);
+				if (f.decoded) {
+					f.corrected = decoder.madeCorrections();
+					f.header = decoder.getHeader6Bit();
+					f.nLongwords = decoder.nLongwords();
+					decoder.getLongwords(f.longwords, 0);
+				}
+			} catch (RuntimeException | Error e) {
+				f.decoded = false; // Still publish the slot, as rejected, so the consumer doesn't wait on it forever
+				failure.compareAndSet(null, e);
+			}
+			if (!f.decoded) { // Don't leave the last message in this slot visible to onRejected
+				f.corrected = false;
+				f.header = 0;
+				f.nLongwords = 0;
+			}
+			f.ready = seq;
+		}
+	}
+	
+	// Hands results to the handler in sequence order, then releases their slots
+	private void consume() {
+		for (long seq = 0;; seq++) {
+			Frame f = ring[(int)seq & mask];
+			for (int n = 0; f.ready != seq; n++) {
+				if (seq >= end && f.ready != seq) return;
+				waitStrategy.idle(n);
+			}
+			try {
+				if (f.decoded) {
+					if (f.corrected) correctedFrames++;
+					else goodFrames++;
+					handler.onFrame(f);
+				} else {
+					rejectedFrames++;
+					handler.onRejected(f);
+				}
+			} catch (RuntimeException | Error e) {
+				failure.compareAndSet(null, e); // Keep the pipeline moving; reported by close()
+			}
+			consumed = seq + 1;
+		}
+	}
+	
+	/**
+	 * Queues any unterminated line, then waits for every queued line to reach the handler and stops the threads
+	 * @throws IllegalStateException If a decoder or the handler threw, with the first exception as the cause
+	 */
+	@Override
+	public void close() {
+		if (ring == null || threads == null) return;
+		finish();
+		end = next;
+		boolean interrupted = false;
+		for (Thread t : threads) {
+			while (true) {
+				try {
+					t.join();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		threads = null;
+		if (interrupted) Thread.currentThread().interrupt();
+		if (failure.get() != null) throw new IllegalStateException("Pipeline failed", failure.get());
+	}
+	
+	/**
+	 * @return Number of messages that decoded without corrections
+	 */
+	public long goodFrames() {
+		return goodFrames;
+	}
+	
+	/**
+	 * @return Number of messages that decoded after error correction
+	 */
+	public long correctedFrames() {
+		return correctedFrames;
+	}
+	
+	/**
+	 * @return Number of lines that failed to decode
+	 */
+	public long rejectedFrames() {
+		return rejectedFrames;
+	}
+	
+	/**
+	 * @return Number of runs dropped for exceeding the maximum message length
+	 */
+	public long overlongFrames() {
+		return overlongFrames;
+	}
+	
+	/**
+	 * @return Number of times the reader found the ring full and had to wait
+	 */
+	public long stalls() {
+		return stalls;
+	}
+}
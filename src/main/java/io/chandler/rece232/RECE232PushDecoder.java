@@ -0,0 +1,258 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.nio.ByteBuffer;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+import io.chandler.rece232.RECE232StreamDecoder.FrameHandler;
+
+/**
+ * Decodes a newline-delimited stream one byte at a time, checking each longword as its last character arrives.
+ * The character classes, XOR checks, spacers and running CRC of a clean message are verified on the way in,
+ *  so at the delimiter a clean message only needs its footer compared and its characters unpacked.
+ * Any other line is handed to the decoder for correction as usual.
+ *
+ * Lines that can't be corrected are given up on as early as possible: runs longer than the maximum message length
+ *  are dropped, and lines with three out-of-range characters too close together to fall in separate longwords are
+ *  only buffered from then on, and rejected at the delimiter without a decode attempt.
+ * Counters and handler calls match {@link RECE232StreamDecoder} on the same input.
+ * A trailing carriage return is ignored and blank lines are skipped, as in {@link RECE232StreamDecoder}.
+ *
+ * The push decoder is not thread-safe.
+ */
+public final class RECE232PushDecoder {
+	
+	private static final int FLETF_MASK = 0b11111_111111_11111;
+	
+	private final RECE232Decoder decoder;
+	private final FrameHandler handler;
+	private final int maxFrameLength;
+	private byte[] charClass;
+	
+	private final byte[] line;
+	private int len = 0;
+	private boolean discarding = false; // Dropping an overlong run until the next delimiter
+	private boolean hopeless = false;   // Buffering a line that can't be corrected, to reject at the delimiter
+	
+	// Clean path state
+	private boolean clean = true; // Every longword so far passed its checks
+	private int crc;       // Running CRC through the last complete longword
+	private int lw;        // Data bits of the current longword
+	private int xor;       // XOR of the current longword's characters
+	
+	// Settled positions of the last two out-of-range characters, or far enough back to never matter
+	private int bad1 = Integer.MIN_VALUE / 2, bad2 = Integer.MIN_VALUE / 2;
+	
+	private long goodFrames, correctedFrames, rejectedFrames, overlongFrames, earlyRejectedFrames;
+	
+	RECE232PushDecoder(RECE232Decoder decoder, int maxLongwords, FrameHandler handler) {
+		if (maxLongwords <= 0) throw new IllegalArgumentException("Must allow at least one longword");
+		this.decoder = decoder;
+		this.handler = handler;
+		this.maxFrameLength = RECE232.messageLength(maxLongwords);
+		this.line = new byte[maxFrameLength + 1]; // Room for a carriage return
+		reset();
+	}
+	
+	/**
+	 * Decodes one received byte
+	 * @param b Received byte
+	 */
+	public void feed(byte b) {
+		if (b == '\n') {
+			if (!discarding) frame();
+			reset();
+			return;
+		}
+		if (discarding) return;
+		if (len == line.length) { // Can't be a message, even with a carriage return
+			overlongFrames++;
+			discarding = true;
+			return;
+		}
+		
+		int k = len;
+		line[len++] = b;
+		if (hopeless) return;
+		
+		if (clean) {
+			int pos = k & 7;
+			int c = charClass[b & 0xff];
+			if ((c & RECE232.CLASS_MASK) != RECE232.CLASS_5BIT << (pos & 1)) {
+				clean = false;
+			} else {
+				int v = c & 0b111111;
+				xor ^= v;
+				switch (pos) {
+					case 0: lw  = v;       break;
+					case 1: lw |= v <<  5; break;
+					case 2: lw |= v << 11; break;
+					case 3: // Header or spacer
+						if (k == 3) crc = RECE232.crc16dnp_tab_1(RECE232.CRC_INIT, v);
+						else if (v != RECE232.partialCRC(crc)) clean = false;
+						break;
+					case 4: lw |= v << 16; break;
+					case 5: lw |= v << 21; break;
+					case 6: lw |= v << 27; break;
+					case 7:
+						if (xor != 0) clean = false; // The check character brings the XOR to 0b111111 ^ 0b111111
+						crc = RECE232.crc16dnp_tab_4(crc, lw);
+						xor = 0b111111;
+						break;
+				}
+			}
+		}
+		
+		// A character 3 back can't be in the footer, so it's settled as part of a longword
+		if (k >= 3 && isOutOfRange(line[k - 3])) {
+			int p = k - 3;
+			// Three out-of-range characters within 9 positions need two in the same longword, which can't be corrected
+			if (p - bad2 <= 8) {
+				hopeless = true;
+				return;
+			}
+			bad2 = bad1;
+			bad1 = p;
+		}
+	}
+	
+	/**
+	 * Decodes received bytes
+	 * @param src Source array
+	 * @param off Offset of the first byte
+	 * @param len Number of bytes
+	 */
+	public void feed(byte[] src, int off, int len) {
+		for (int i = off; i < off + len; i++) feed(src[i]);
+	}
+	
+	/**
+	 * Decodes the remaining bytes of a buffer, advancing its position to its limit
+	 * @param src Source buffer
+	 */
+	public void feed(ByteBuffer src) {
+		while (src.hasRemaining()) feed(src.get());
+	}
+	
+	/**
+	 * Decodes any bytes that were not followed by a delimiter, as at the end of a stream
+	 */
+	public void finish() {
+		if (len > 0 && !discarding) frame();
+		reset();
+	}
+	
+	private boolean isOutOfRange(byte b) {
+		return (charClass[b & 0xff] & RECE232.CLASS_MASK) == 0;
+	}
+	
+	private void frame() {
+		int n = len;
+		if (n > 0 && line[n - 1] == '\r') n--;
+		if (n == 0) return; // Blank line
+		if (n > maxFrameLength) {
+			overlongFrames++;
+		} else if (hopeless) {
+			earlyRejectedFrames++;
+			rejectedFrames++;
+			handler.onRejected(line, 0, n);
+		} else if (clean && n % 8 == 3 && n > 3 && footerMatches(n)) {
+			decoder.loadVerified(line, 0, n);
+			goodFrames++;
+			handler.onFrame(decoder);
+		} else if (decoder.load(line, 0, n)) {
+			if (decoder.madeCorrections()) correctedFrames++;
+			else goodFrames++;
+			handler.onFrame(decoder);
+		} else {
+			rejectedFrames++;
+			handler.onRejected(line, 0, n);
+		}
+	}
+	
+	// The running CRC covers every longword, since the line ends just past a longword boundary
+	private boolean footerMatches(int n) {
+		int f0 = charClass[line[n - 3] & 0xff], f1 = charClass[line[n - 2] & 0xff], f2 = charClass[line[n - 1] & 0xff];
+		if ((f0 & RECE232.CLASS_MASK) != RECE232.CLASS_5BIT || (f1 & RECE232.CLASS_MASK) != RECE232.CLASS_6BIT
+				|| (f2 & RECE232.CLASS_MASK) != RECE232.CLASS_5BIT) return false;
+		int fletF = (f2 & 0b111111) << 11 | (f1 & 0b111111) << 5 | (f0 & 0b111111);
+		return (crc & FLETF_MASK) == fletF;
+	}
+	
+	private void reset() {
+		len = 0;
+		discarding = false;
+		hopeless = false;
+		clean = true;
+		xor = 0b111111;
+		bad1 = bad2 = Integer.MIN_VALUE / 2;
+		charClass = RECE232.charClasses(decoder.convertsTabs());
+	}
+	
+	/**
+	 * @return Number of messages that decoded without corrections
+	 */
+	public long goodFrames() {
+		return goodFrames;
+	}
+	
+	/**
+	 * @return Number of messages that decoded after error correction
+	 */
+	public long correctedFrames() {
+		return correctedFrames;
+	}
+	
+	/**
+	 * @return Number of complete lines that failed to decode, including those rejected early
+	 */
+	public long rejectedFrames() {
+		return rejectedFrames;
+	}
+	
+	/**
+	 * @return Number of runs dropped for exceeding the maximum message length
+	 */
+	public long overlongFrames() {
+		return overlongFrames;
+	}
+	
+	/**
+	 * @return Number of rejected lines that were given up on before their delimiter, without a decode attempt
+	 */
+	public long earlyRejectedFrames() {
+		return earlyRejectedFrames;
+	}
+	
+	/**
+	 * Resets all frame counters to zero
+	 */
+	public void resetCounters() {
+		goodFrames = correctedFrames = rejectedFrames = overlongFrames = earlyRejectedFrames = 0;
+	}
+}
@@ -0,0 +1,259 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+
+/**
+ * Splits a newline-delimited byte stream into messages and decodes them through one reusable buffer.
+ * Lines are decoded in place; only a partial line left at the end of a read is moved.
+ * A trailing carriage return is ignored, and runs longer than the maximum message length are dropped
+ *  up to the next newline.
+ *
+ * Reads from a channel only block if the channel does, so one thread may service many non-blocking channels.
+ * The stream decoder is not thread-safe.
+ */
+public final class RECE232StreamDecoder {
+
+	/**
+	 * Receives decoded messages
+	 */
+	public interface FrameHandler {
+		/**
+		 * Called for each message that decodes successfully
+		 * @param decoder Decoder holding the message; its contents are only valid until the handler returns
+		 */
+		void onFrame(RECE232Decoder decoder);
+
+		/**
+		 * Called for each line that fails to decode, except for overlong runs
+		 * @param line Buffer containing the line
+		 * @param off Offset of the line
+		 * @param len Length of the line, excluding delimiters
+		 */
+		default void onRejected(byte[] line, int off, int len) { }
+	}
+
+	private final RECE232Decoder decoder;
+	private final FrameHandler handler;
+	private final int maxFrameLength;
+
+	private final byte[] buffer;
+	private final ByteBuffer channelView;
+	private int start = 0; // First unconsumed byte
+	private int scan = 0;  // First byte not yet searched for a delimiter
+	private int end = 0;   // End of buffered data
+	private boolean discarding = false; // Dropping an overlong run until the next delimiter
+
+	private long goodFrames, correctedFrames, rejectedFrames, overlongFrames;
+
+	RECE232StreamDecoder(RECE232Decoder decoder, int maxLongwords, FrameHandler handler) {
+		if (maxLongwords <= 0) throw new IllegalArgumentException("Must allow at least one longword");
+		this.decoder = decoder;
+		this.handler = handler;
+		this.maxFrameLength = RECE232.messageLength(maxLongwords);
+		this.buffer = new byte[Math.max(4096, 2 * (maxFrameLength + 2))];
+		this.channelView = ByteBuffer.wrap(buffer);
+	}
+
+	/**
+	 * Performs a single read from the stream and decodes every complete line.
+	 * @param in Source stream
+	 * @return Number of bytes read, or -1 at the end of the stream
+	 * @throws IOException
+	 */
+	public int read(InputStream in) throws IOException {
+		makeRoom();
+		int n = in.read(buffer, end, buffer.length - end);
+		if (n > 0) {
+			end += n;
+			process();
+		}
+		return n;
+	}
+
+	/**
+	 * Performs a single read from the channel and decodes every complete line.
+	 * @param ch Source channel, which may be non-blocking
+	 * @return Number of bytes read, or -1 at the end of the stream
+	 * @throws IOException
+	 */
+	public int read(ReadableByteChannel ch) throws IOException {
+		makeRoom();
+		channelView.limit(buffer.length).position(end);
+		int n = ch.read(channelView);
+		if (n > 0) {
+			end += n;
+			process();
+		}
+		return n;
+	}
+
+	/**
+	 * Reads and decodes until the end of the stream, including a final unterminated line
+	 * @param in Source stream
+	 * @throws IOException
+	 */
+	public void readFully(InputStream in) throws IOException {
+		while (read(in) >= 0);
+		finish();
+	}
+
+	/**
+	 * Reads and decodes until the end of the channel, including a final unterminated line
+	 * @param ch Source channel, which must be blocking
+	 * @throws IOException
+	 */
+	public void readFully(ReadableByteChannel ch) throws IOException {
+		while (read(ch) >= 0);
+		finish();
+	}
+
+	/**
+	 * Decodes bytes received elsewhere, such as from a selector loop or a serial driver callback
+	 * @param src Source array
+	 * @param off Offset of the first byte
+	 * @param len Number of bytes
+	 */
+	public void feed(byte[] src, int off, int len) {
+		while (len > 0) {
+			makeRoom();
+			int n = Math.min(len, buffer.length - end);
+			System.arraycopy(src, off, buffer, end, n);
+			end += n;
+			off += n;
+			len -= n;
+			process();
+		}
+	}
+
+	/**
+	 * Decodes the remaining bytes of a buffer, advancing its position to its limit
+	 * @param src Source buffer
+	 */
+	public void feed(ByteBuffer src) {
+		while (src.hasRemaining()) {
+			makeRoom();
+			int n = Math.min(src.remaining(), buffer.length - end);
+			src.get(buffer, end, n);
+			end += n;
+			process();
+		}
+	}
+
+	/**
+	 * Decodes any buffered bytes that were not followed by a delimiter, as at the end of a stream
+	 */
+	public void finish() {
+		if (end > start && !discarding) frame(start, end);
+		start = scan = end = 0;
+		discarding = false;
+	}
+
+	// Decodes each complete line in the buffer
+	private void process() {
+		for (int i = scan; i < end; i++) {
+			if (buffer[i] != '\n') continue;
+			if (discarding) discarding = false; // Tail of an overlong run
+			else frame(start, i);
+			start = i + 1;
+		}
+		scan = end;
+
+		if (end - start > maxFrameLength + 1) { // Can't be a message, even with a carriage return
+			if (!discarding) overlongFrames++;
+			discarding = true;
+			start = scan = end = 0;
+		}
+	}
+
+	private void frame(int from, int to) {
+		if (to > from && buffer[to - 1] == '\r') to--;
+		int len = to - from;
+		if (len == 0) return; // Blank line
+		if (len > maxFrameLength) {
+			overlongFrames++;
+		} else if (decoder.load(buffer, from, len)) {
+			if (decoder.madeCorrections()) correctedFrames++;
+			else goodFrames++;
+			handler.onFrame(decoder);
+		} else {
+			rejectedFrames++;
+			handler.onRejected(buffer, from, len);
+		}
+	}
+
+	// Moves a partial line to the front so a full read fits behind it
+	private void makeRoom() {
+		if (start == 0) return;
+		int remaining = end - start;
+		System.arraycopy(buffer, start, buffer, 0, remaining);
+		scan -= start;
+		end = remaining;
+		start = 0;
+	}
+
+	/**
+	 * @return Number of messages that decoded without corrections
+	 */
+	public long goodFrames() {
+		return goodFrames;
+	}
+
+	/**
+	 * @return Number of messages that decoded after error correction
+	 */
+	public long correctedFrames() {
+		return correctedFrames;
+	}
+
+	/**
+	 * @return Number of lines that failed to decode
+	 */
+	public long rejectedFrames() {
+		return rejectedFrames;
+	}
+
+	/**
+	 * @return Number of runs dropped for exceeding the maximum message length
+	 */
+	public long overlongFrames() {
+		return overlongFrames;
+	}
+
+	/**
+	 * Resets all frame counters to zero
+	 */
+	public void resetCounters() {
+		goodFrames = correctedFrames = rejectedFrames = overlongFrames = 0;
+	}
+}
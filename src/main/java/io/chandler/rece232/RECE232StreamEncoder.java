@@ -0,0 +1,217 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+import io.chandler.rece232.RECE232.RECE232Encoder;
+
+/**
+ * Encodes messages straight into an internal direct buffer, each followed by a delimiter,
+ *  and writes them out in batches.
+ * The buffer is written when it passes the flush threshold, when the oldest pending message
+ *  passes the latency limit as another message completes or {@link #flushIfDue()} is called,
+ *  or on an explicit {@link #flush()}.
+ * Output is byte-identical to {@link RECE232Encoder} followed by the delimiter.
+ * The channel must be in blocking mode.
+ *
+ * The stream encoder is not thread-safe.
+ */
+public final class RECE232StreamEncoder implements Flushable, Closeable {
+
+	private final RECE232Encoder encoder;
+	private final WritableByteChannel out;
+	private final ByteBuffer buffer;
+
+	private byte[] delimiter = {'\n'};
+	private int flushThreshold;
+	private long maxLatencyNanos = 0; // 0 for no latency limit
+
+	private long oldestPending; // Time the oldest unwritten message completed, if any are pending
+	private boolean pending = false;
+	private boolean inMessage = false;
+
+	RECE232StreamEncoder(RECE232Encoder encoder, WritableByteChannel out, int bufferSize) {
+		if (bufferSize < RECE232.messageLength(1) + 1) throw new IllegalArgumentException("Buffer too small for a message");
+		if (isNonBlocking(out)) throw new IllegalArgumentException("Channel must be in blocking mode");
+		this.encoder = encoder;
+		this.out = out;
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		this.flushThreshold = bufferSize;
+	}
+
+	/**
+	 * Sets the bytes written after each message
+	 * @param delimiter Delimiter bytes. Default is a newline.
+	 * @return
+	 */
+	public RECE232StreamEncoder setDelimiter(byte[] delimiter) {
+		this.delimiter = delimiter.clone();
+		return this;
+	}
+
+	/**
+	 * Sets the number of pending bytes that triggers a write
+	 * @param bytes Flush threshold. Default is the buffer size.
+	 * @return
+	 */
+	public RECE232StreamEncoder setFlushThreshold(int bytes) {
+		if (bytes <= 0) throw new IllegalArgumentException("Threshold must be positive");
+		this.flushThreshold = bytes;
+		return this;
+	}
+
+	/**
+	 * Sets the longest a completed message may wait before it is written
+	 * @param nanos Latency limit in nanoseconds, or 0 for no limit. Default is 0.
+	 * @return
+	 */
+	public RECE232StreamEncoder setMaxLatency(long nanos) {
+		if (nanos < 0) throw new IllegalArgumentException("Latency must not be negative");
+		this.maxLatencyNanos = nanos;
+		return this;
+	}
+
+	/**
+	 * Begins a new message in the buffer, writing out pending messages first if there isn't room.
+	 * Append the longwords to the returned encoder, then call {@link #end()}, or {@link #abort()} to drop it.
+	 * @param header6Bit 6-bit message header
+	 * @param nLongwords Number of longwords that will be appended
+	 * @return The encoder for the message
+	 * @throws IOException
+	 */
+	public RECE232Encoder begin(byte header6Bit, int nLongwords) throws IOException {
+		if (inMessage) throw new IllegalStateException("Previous message was not ended");
+		if (nLongwords <= 0) throw new IllegalArgumentException("Must encode at least one longword");
+		int len = RECE232.messageLength(nLongwords) + delimiter.length;
+		if (len > buffer.capacity()) throw new IllegalArgumentException("Message exceeds buffer size");
+		if (len > buffer.remaining()) flush();
+		encoder.init(header6Bit, nLongwords, buffer);
+		inMessage = true;
+		return encoder;
+	}
+
+	/**
+	 * Completes the current message and writes out the buffer if a threshold has been reached.
+	 * If the message is incomplete, it is dropped and the stream encoder stays usable.
+	 * @throws IOException
+	 * @throws IllegalStateException If the wrong number of longwords was appended
+	 */
+	public void end() throws IOException {
+		if (!inMessage) throw new IllegalStateException("No message in progress");
+		try {
+			encoder.end(); // Leaves the buffer position alone if it throws
+			buffer.put(delimiter);
+		} finally {
+			inMessage = false;
+		}
+
+		if (buffer.position() >= flushThreshold) {
+			flush();
+		} else if (maxLatencyNanos > 0) {
+			long now = System.nanoTime();
+			if (!pending) {
+				oldestPending = now;
+				pending = true;
+			}
+			if (now - oldestPending >= maxLatencyNanos) flush();
+		}
+	}
+
+	/**
+	 * Drops the current message; nothing of it is written
+	 */
+	public void abort() {
+		if (!inMessage) throw new IllegalStateException("No message in progress");
+		inMessage = false; // The buffer position only moves once a message ends
+	}
+
+	/**
+	 * Encodes a complete message from an array of longwords
+	 * @param header6Bit 6-bit message header
+	 * @param longwords Source array
+	 * @param off Offset of the first longword
+	 * @param len Number of longwords
+	 * @throws IOException
+	 */
+	public void write(byte header6Bit, int[] longwords, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || longwords.length - off < len) throw new IndexOutOfBoundsException(); // Before the message is opened
+		begin(header6Bit, len).appendLongwords(longwords, off, len);
+		end();
+	}
+
+	/**
+	 * Writes out pending messages if the oldest has waited longer than the latency limit.
+	 * Call periodically when messages may stop arriving.
+	 * @throws IOException
+	 */
+	public void flushIfDue() throws IOException {
+		if (maxLatencyNanos > 0 && pending && System.nanoTime() - oldestPending >= maxLatencyNanos) flush();
+	}
+
+	/**
+	 * Writes out all completed messages.
+	 * If the write fails, the unwritten bytes stay pending and the stream encoder stays usable.
+	 * @throws IllegalBlockingModeException If the channel was switched to non-blocking mode
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (inMessage) throw new IllegalStateException("Can't flush in the middle of a message");
+		if (isNonBlocking(out)) throw new IllegalBlockingModeException(); // A write could return 0 forever
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) out.write(buffer);
+		} finally {
+			buffer.compact(); // Keeps any unwritten bytes ahead of the next message
+		}
+		pending = false;
+	}
+
+	private static boolean isNonBlocking(WritableByteChannel channel) {
+		return channel instanceof SelectableChannel && !((SelectableChannel)channel).isBlocking();
+	}
+
+	/**
+	 * Writes out all completed messages and closes the channel.
+	 * A message that was begun but not ended is dropped.
+	 */
+	@Override
+	public void close() throws IOException {
+		inMessage = false; // The buffer position only moves once a message ends
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+}
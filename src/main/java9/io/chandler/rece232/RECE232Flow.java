@@ -0,0 +1,374 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+import io.chandler.rece232.RECE232.RECE232Encoder;
+
+/**
+ * {@link Flow.Processor} stages for reactive services: one turns chunks of a newline-delimited stream into
+ *  messages, the other turns messages into delimited frames.
+ * Both stages only pull from upstream when downstream demand can't be met from work already done, so a slow
+ *  subscriber throttles reads instead of letting decoded lines pile up. The decode stage requests one chunk at a
+ *  time; the encode stage requests messages in batches sized to the outstanding demand.
+ *
+ * Requires a Java 9 runtime; this class is built from src/main/java9 when the JDK provides java.util.concurrent.Flow.
+ */
+public final class RECE232Flow {
+	
+	private static final int MAX_ENCODE_BATCH = 256;
+	
+	private RECE232Flow() { }
+	
+	/**
+	 * Creates a stage that frames and decodes a newline-delimited byte stream.
+	 * Lines that fail to decode and overlong runs are counted, not emitted.
+	 * @param decoder Configured decoder, owned by the stage
+	 * @param maxLongwords Longest message expected; longer lines are dropped
+	 * @return A new DecodeProcessor, which accepts one subscriber
+	 */
+	public static DecodeProcessor getDecodeProcessor(RECE232Decoder decoder, int maxLongwords) {
+		return new DecodeProcessor(decoder, maxLongwords);
+	}
+	
+	/**
+	 * Creates a stage that encodes each message into its own buffer, followed by a delimiter
+	 * @param encoder Configured encoder, owned by the stage
+	 * @return A new EncodeProcessor, which accepts one subscriber
+	 */
+	public static EncodeProcessor getEncodeProcessor(RECE232Encoder encoder) {
+		return new EncodeProcessor(encoder);
+	}
+	
+	/**
+	 * A decoded message, or one to be encoded
+	 */
+	public static final class Message {
+		private final byte header;
+		private final int[] longwords;
+		private final boolean corrected;
+		
+		private Message(byte header6Bit, int[] longwords, boolean corrected) {
+			this.header = header6Bit;
+			this.longwords = longwords;
+			this.corrected = corrected;
+		}
+		
+		/**
+		 * Creates a message to be encoded
+		 * @param header6Bit 6-bit message header
+		 * @param longwords Longwords of the message, which are copied
+		 * @return A new Message
+		 */
+		public static Message of(byte header6Bit, int... longwords) {
+			if (longwords.length == 0) throw new IllegalArgumentException("Must have at least one longword");
+			return new Message((byte)(header6Bit & 0b111111), longwords.clone(), false);
+		}
+		
+		public byte getHeader6Bit() {
+			return header;
+		}
+		
+		public int nLongwords() {
+			return longwords.length;
+		}
+		
+		public int getLongword(int i) {
+			return longwords[i];
+		}
+		
+		/**
+		 * @return A copy of the longwords
+		 */
+		public int[] getLongwords() {
+			return longwords.clone();
+		}
+		
+		/**
+		 * Checks if the decoder corrected errors in the message
+		 * @return
+		 */
+		public boolean madeCorrections() {
+			return corrected;
+		}
+	}
+	
+	/**
+	 * Turns {@link ByteBuffer} chunks of a newline-delimited stream into messages.
+	 * Framing follows {@link RECE232StreamDecoder}, and a final unterminated line is decoded on completion.
+	 */
+	public static final class DecodeProcessor extends Stage<ByteBuffer, Message> {
+		private final RECE232StreamDecoder stream;
+		
+		private DecodeProcessor(RECE232Decoder decoder, int maxLongwords) {
+			this.stream = new RECE232StreamDecoder(decoder, maxLongwords, (dec) -> {
+				int[] longwords = new int[dec.nLongwords()];
+				dec.getLongwords(longwords, 0);
+				emit(new Message(dec.getHeader6Bit(), longwords, dec.madeCorrections()));
+			});
+		}
+		
+		@Override
+		void process(ByteBuffer chunk) {
+			stream.feed(chunk);
+		}
+		
+		@Override
+		void complete() {
+			stream.finish();
+		}
+		
+		@Override
+		long batch(long demand) {
+			return 1; // A chunk may hold any number of messages
+		}
+		
+		/**
+		 * @return Number of messages that decoded without corrections; exact once the stage has terminated
+		 */
+		public long goodFrames() {
+			return stream.goodFrames();
+		}
+		
+		/**
+		 * @return Number of messages that decoded after error correction; exact once the stage has terminated
+		 */
+		public long correctedFrames() {
+			return stream.correctedFrames();
+		}
+		
+		/**
+		 * @return Number of lines that failed to decode; exact once the stage has terminated
+		 */
+		public long rejectedFrames() {
+			return stream.rejectedFrames();
+		}
+		
+		/**
+		 * @return Number of runs dropped for exceeding the maximum message length; exact once the stage has terminated
+		 */
+		public long overlongFrames() {
+			return stream.overlongFrames();
+		}
+	}
+	
+	/**
+	 * Turns messages into read-ready {@link ByteBuffer}s, each holding one message and its delimiter
+	 */
+	public static final class EncodeProcessor extends Stage<Message, ByteBuffer> {
+		private final RECE232Encoder encoder;
+		private byte[] delimiter = {'\n'};
+		
+		private EncodeProcessor(RECE232Encoder encoder) {
+			this.encoder = encoder;
+		}
+		
+		/**
+		 * Sets the bytes written after each message; call before subscribing
+		 * @param delimiter Delimiter bytes. Default is a newline.
+		 * @return
+		 */
+		public EncodeProcessor setDelimiter(byte[] delimiter) {
+			this.delimiter = delimiter.clone();
+			return this;
+		}
+		
+		@Override
+		void process(Message msg) {
+			int len = RECE232.messageLength(msg.longwords.length);
+			byte[] frame = new byte[len + delimiter.length];
+			encoder.init(msg.header, msg.longwords.length, frame, 0).appendLongwords(msg.longwords, 0, msg.longwords.length).end();
+			System.arraycopy(delimiter, 0, frame, len, delimiter.length);
+			emit(ByteBuffer.wrap(frame));
+		}
+		
+		@Override
+		void complete() { }
+		
+		@Override
+		long batch(long demand) {
+			return Math.min(demand, MAX_ENCODE_BATCH); // One frame per message
+		}
+	}
+	
+	/**
+	 * Demand-driven processor with a single subscriber.
+	 * Upstream signals are serialized by the publisher; output is handed over through a queue and emitted by
+	 *  whichever thread wins the drain loop, so requests and cancellation may come from any thread.
+	 */
+	static abstract class Stage<I, O> implements Flow.Processor<I, O> {
+		private final Queue<O> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger wip = new AtomicInteger();
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicLong upstreamPending = new AtomicLong(); // Items requested but not yet received
+		private final AtomicBoolean subscribed = new AtomicBoolean();
+		
+		private volatile Flow.Subscription upstream;
+		private volatile Flow.Subscriber<? super O> downstream;
+		private volatile boolean done, cancelled;
+		private volatile Throwable error;
+		private boolean terminated; // Drain loop only
+		
+		// Transforms one upstream item, passing output to emit()
+		abstract void process(I item);
+		
+		// Flushes output held back for more input
+		abstract void complete();
+		
+		// Number of upstream items to request when output runs dry
+		abstract long batch(long demand);
+		
+		final void emit(O item) {
+			queue.offer(item);
+		}
+		
+		@Override
+		public void subscribe(Flow.Subscriber<? super O> subscriber) {
+			if (subscriber == null) throw new NullPointerException();
+			if (!subscribed.compareAndSet(false, true)) {
+				subscriber.onSubscribe(new Flow.Subscription() {
+					@Override public void request(long n) { }
+					@Override public void cancel() { }
+				});
+				subscriber.onError(new IllegalStateException("Stage already has a subscriber"));
+				return;
+			}
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+					if (n <= 0) {
+						error = new IllegalArgumentException("Non-positive request: " + n);
+						done = true;
+						cancelUpstream();
+					} else {
+						demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+					}
+					drain();
+				}
+				
+				@Override
+				public void cancel() {
+					cancelled = true;
+					cancelUpstream();
+					drain();
+				}
+			});
+			downstream = subscriber; // Nothing is emitted before onSubscribe returns
+			drain();
+		}
+		
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			if (upstream != null || cancelled) {
+				subscription.cancel();
+				return;
+			}
+			upstream = subscription;
+			drain();
+		}
+		
+		@Override
+		public void onNext(I item) {
+			upstreamPending.decrementAndGet();
+			if (done || cancelled) return;
+			try {
+				process(item);
+			} catch (RuntimeException e) {
+				cancelUpstream();
+				onError(e);
+				return;
+			}
+			drain();
+		}
+		
+		@Override
+		public void onError(Throwable throwable) {
+			if (done) return;
+			error = throwable;
+			done = true;
+			drain();
+		}
+		
+		@Override
+		public void onComplete() {
+			if (done) return;
+			try {
+				complete();
+			} catch (RuntimeException e) {
+				error = e;
+			}
+			done = true;
+			drain();
+		}
+		
+		private void cancelUpstream() {
+			Flow.Subscription s = upstream;
+			if (s != null) s.cancel();
+		}
+		
+		private void drain() {
+			if (wip.getAndIncrement() != 0) return;
+			int missed = 1;
+			do {
+				Flow.Subscriber<? super O> s = downstream;
+				if (cancelled) {
+					queue.clear();
+				} else if (s != null && !terminated) {
+					if (error != null) { // Errors skip ahead of pending output
+						terminated = true;
+						queue.clear();
+						s.onError(error);
+					} else {
+						long d = demand.get(), e = 0;
+						for (O item; e != d && (item = queue.poll()) != null; e++) s.onNext(item);
+						if (e != 0 && d != Long.MAX_VALUE) d = demand.addAndGet(-e);
+						
+						if (queue.isEmpty()) {
+							if (done) {
+								terminated = true;
+								s.onComplete();
+							} else if (d > 0 && upstream != null && upstreamPending.get() == 0) {
+								long n = batch(d);
+								upstreamPending.set(n);
+								upstream.request(n);
+							}
+						}
+					}
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+}
@@ -26,22 +26,24 @@ For more information, please refer to <https://unlicense.org>
  */
 package io.chandler.rece232;
 
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map.Entry;
-import java.util.Random;
-import java.util.concurrent.Callable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.stream.IntStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import io.chandler.rece232.RECE232.RECE232Decoder;
 import io.chandler.rece232.RECE232.RECE232Encoder;
@@ -62,84 +64,56 @@ public class RECE232Benchmarks {
 		private final RECE232Decoder decoder = RECE232.getDecoder();
 
 		private final int minIntsInMessage, maxIntsInMessage;
-		private final int totalMsgs;
-		private final double probBitFlip;     // Computed for each bit
-		private final double probDroppedByte; // Computed for each byte
-		private final Random rand;
+		final int totalMsgs;
+		private final RECE232NoiseSimulator channel;
+		private final SplittableRandom rand;
 
-		public int bitFlipCount = 0;
-		public int droppedByteCount = 0;
-		
 		public int modifiedMessageCount = 0;
 		public int recoveredCount = 0;
 		public int unrecoverableCount = 0;
 		public int wrongCount = 0;
 		
-		public double avgMsgLength = 0;
+		public long msgLength = 0;
 		
-		public Benchmarker(int minIntsInMessage, int maxIntsInMessage, int totalMsgs, double probBitFlip, double probDroppedByte,
-				Random rand, boolean skipRecoveryOnCorruptedChecksum, boolean failCorruptedChecksum) {
+		public Benchmarker(int minIntsInMessage, int maxIntsInMessage, int totalMsgs, RECE232NoiseSimulator channel,
+				boolean skipRecoveryOnCorruptedChecksum, boolean failCorruptedChecksum) {
 			this.minIntsInMessage = minIntsInMessage;
 			this.maxIntsInMessage = maxIntsInMessage;
 			this.totalMsgs = totalMsgs;
-			this.probBitFlip = probBitFlip;
-			this.probDroppedByte = probDroppedByte;
-			this.rand = rand;
+			this.channel = channel;
+			this.rand = channel.random();
 			decoder.setSkipRecoveryOnCorruptedChecksum(skipRecoveryOnCorruptedChecksum);
 			decoder.setFailOnCorruptedChecksum(failCorruptedChecksum);
 		}
 		
 		public Benchmarker run() {
 
-			long msgLength = 0;
-
 			int[] buffer = new int[maxIntsInMessage];
+			byte[] result = new byte[RECE232.messageLength(maxIntsInMessage)];
+			byte[] received = new byte[result.length];
 			
 			for (int i = 0; i < totalMsgs; i++) {
 				int code = rand.nextInt(64); // Message code from 0-63
 				int n = rand.nextInt(maxIntsInMessage + 1 - minIntsInMessage) + minIntsInMessage;
-				encoder.init((byte)code, n);
+				encoder.init((byte)code, n, result, 0);
 				for (int j = 0; j < n; j++) {
 					int v = rand.nextInt();
 					buffer[j] = v; // Store for checks
 					encoder.appendLongword(v);
 				}
-				byte[] result = encoder.finish();
-				msgLength += result.length;
+				int len = encoder.end();
+				msgLength += len;
 				
-				
-				boolean modified = false;
-				// Reencode result with errors to simulate serial transmission
-				ByteArrayOutputStream errEncoder = new ByteArrayOutputStream(result.length);
-				for (byte b : result) {
-					// Drop the byte?
-					if (rand.nextDouble() < probDroppedByte) {
-						droppedByteCount++;
-						modified = true;
-					} else {
-						// Do bit flips
-						for (int x = 0; x < 8; x++) {
-							// Flip bit x?
-							if (rand.nextDouble() < probBitFlip) {
-								bitFlipCount++;
-								modified = true;
-								b ^= (1<<x);
-							}
-						}
-						errEncoder.write(b);
-					}
-				}
+				// Pass the result through the channel to simulate serial transmission
+				int receivedLen = channel.transmit(result, 0, len, received, 0);
+				boolean modified = channel.modified();
 				
 				boolean loaded, correct;
 				
-				byte[] result_mod = result;
 				if (modified || CHECK_UNMODIFIED) {
-					if (modified) {
-						modifiedMessageCount++;
-						result_mod = errEncoder.toByteArray();
-					}
+					if (modified) modifiedMessageCount++;
 					
-					loaded = decoder.load(result_mod);
+					loaded = decoder.load(received, 0, receivedLen);
 					correct = true;
 					
 					if (loaded) {
@@ -160,124 +134,358 @@ public class RECE232Benchmarks {
 					recoveredCount++;
 				} else if ((!loaded || !correct) && !modified) {
 					// Should never happen
-					throw new RuntimeException("Decoder failed for " + new String(result_mod));
+					throw new RuntimeException("Decoder failed for " + new String(received, 0, receivedLen));
 				} else if (!loaded && modified) {
 					unrecoverableCount++;
 				}else if (loaded && !correct && modified) {
 					wrongCount++;
-					corruptedList.put(new String(result), new String(result_mod));
+					corruptedList.put(new String(result, 0, len), new String(received, 0, receivedLen));
 				}
 			}
-			this.avgMsgLength = msgLength / (double)totalMsgs;
 			return this;
 		}
 		
 	}
 	
-	@ParameterizedTest
-	@ValueSource(strings = {
-			"1-7, 0.1%, 0.25%, skipifnochk", "1-7, 0.1%, 0.25%",
-			
-			"1-1, 0.1%, 0%,    skipifnochk", "1-1, 0.1%, 0%",
-			"2-2, 0.1%, 0%,    skipifnochk", "2-2, 0.1%, 0%",
-			"4-4, 0.1%, 0%,    skipifnochk", "4-4, 0.1%, 0%",
-			"6-6, 0.1%, 0%,    skipifnochk", "6-6, 0.1%, 0%",
-			"1-1, 0.1%, 0.25%, skipifnochk", "1-1, 0.1%, 0.25%",
-			"2-2, 0.1%, 0.25%, skipifnochk", "2-2, 0.1%, 0.25%",
-			"4-4, 0.1%, 0.25%, skipifnochk", "4-4, 0.1%, 0.25%",
-			"6-6, 0.1%, 0.25%, skipifnochk", "6-6, 0.1%, 0.25%",
-			"1-1, 0.2%, 0.5%,  skipifnochk", "1-1, 0.2%, 0.5%",
-			"2-2, 0.2%, 0.5%,  skipifnochk", "2-2, 0.2%, 0.5%",
-			"4-4, 0.2%, 0.5%,  skipifnochk", "4-4, 0.2%, 0.5%",
-			"6-6, 0.2%, 0.5%,  skipifnochk", "6-6, 0.2%, 0.5%",
-			"1-1, 0.4%, 1%,    skipifnochk", "1-1, 0.4%, 1%",
-			"2-2, 0.4%, 1%,    skipifnochk", "2-2, 0.4%, 1%",
-			"4-4, 0.4%, 1%,    skipifnochk", "4-4, 0.4%, 1%",
-			"6-6, 0.4%, 1%,    skipifnochk", "6-6, 0.4%, 1%",
-			})
-	public void testErrorRates(String param) throws InterruptedException, ExecutionException {
-		final String[] spl = param.split("[, \\-\\%]+");
+	/**
+	 * Pathological line found by searching for inputs that maximize gap-alignment branching.
+	 * '5' and '6' are characters in the 5- and 6-bit ranges; the footer parses as an intact checksum.
+	 */
+	static final String WORST_CASE_GAPS =
+			"5656565556565666565656665656565556565655565656565656555656565556" +
+			"565655565656665656565566565656565655656565565656555656566565";
+	
+	static byte[] classPattern(String pattern) {
+		byte[] msg = new byte[pattern.length()];
+		for (int i = 0; i < msg.length; i++) msg[i] = (byte)(pattern.charAt(i) == '5' ? ' ' : '@');
+		return msg;
+	}
+	
+	/**
+	 * The exhaustive recursion calculateGaps used before it was tabulated, kept as a latency and correctness reference.
+	 * Only the gap search runs here; checksums and correction are not attempted.
+	 */
+	static class RecursiveGapSearch {
+		private static final int INCOMPLETE = Integer.MAX_VALUE;
+		int nLongwords;
+		int[] recon = new int[0]; // Symbol at each index, 0 at a gap or corrupt character
+		int[] gaps = new int[0];  // Symbol index of the gap or corrupt character in each longword, or -1
 		
-		/* Test Variables */
-		final int RUN_TOTAL_MSGS = 100_000_000;
-		final int INSTANCES = 8;
-		final int THREADS   = 8;
+		// The gap count, or Integer.MAX_VALUE if the message can't be aligned
+		int search(byte[] src) {
+			nLongwords = (src.length - 3 + 7) / 8;
+			if (recon.length < nLongwords * 8) {
+				recon = new int[nLongwords * 8];
+				gaps = new int[nLongwords];
+			}
+			Arrays.fill(gaps, 0, nLongwords, -1);
+			return calculateGaps(src, 0, src.length, 0, 0, nLongwords * 8, 0);
+		}
 		
-		double probBitFlip     = Double.parseDouble(spl[2]) / 100.; // Computed for each bit
-		double probDroppedByte = Double.parseDouble(spl[3]) / 100.; // Computed for each byte
-		int minIntsInMessage =   Integer.parseInt  (spl[0]);
-		int maxIntsInMessage =   Integer.parseInt  (spl[1]);
+		private int calculateGaps(byte[] src, int off, int len, int i, int r, int n, int gapCount) {
+			nextByte: for (;; i++, r++) {
+				int longwordIndex = r / 8;
+				boolean exp5Bit = r % 2 == 0;
+				if (i >= len - 2) {
+					return r == n ? gapCount : INCOMPLETE;
+				} else if (r == n) {
+					return i == len - 3 ? gapCount : INCOMPLETE;
+				} else {
+					int byt = src[off + i] & 0xff;
+					if (byt < 32 || byt >= 128) {
+						if (gaps[longwordIndex] != -1) return INCOMPLETE;
+						gaps[longwordIndex] = r;
+						recon[r] = 0;
+						continue nextByte;
+					} else if (exp5Bit && byt < 64) {
+						recon[r] = byt - 32;
+						continue nextByte;
+					} else if (!exp5Bit && byt >= 64) {
+						recon[r] = byt - 64;
+						continue nextByte;
+					} else {
+						if (gaps[longwordIndex] != -1) return INCOMPLETE;
+						recon[r] = 0;
+						gaps[longwordIndex] = r;
+						
+						int corruptCase = calculateGaps(src, off, len, i+1, r+1, n, gapCount);
+						if (corruptCase == 0) return corruptCase;
+						
+						for (int l = longwordIndex + 1; l < nLongwords; l++) gaps[l] = -1;
+						int gapCase = calculateGaps(src, off, len, i, r+1, n, gapCount+1);
+						
+						if (corruptCase < gapCase) {
+							for (int l = longwordIndex + 1; l < nLongwords; l++) gaps[l] = -1;
+							continue nextByte;
+						} else {
+							return gapCase;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testWorstCaseGapLatency() {
+		final int WARMUP = 20_000;
+		final int RUNS = 20_000;
+		final int REFERENCE_RUNS = 1_000; // The recursion is slow enough that a few runs show the difference
 		
-		boolean skipRecoveryOnCorruptedChecksum = param.contains("skipifnochk"),
-				failCorruptedChecksum = false;
-		/******************/
+		RECE232Decoder decoder = RECE232.getDecoder();
+		RecursiveGapSearch reference = new RecursiveGapSearch();
+		byte[] msg = classPattern(WORST_CASE_GAPS);
 		
+		for (int i = 0; i < WARMUP; i++) decoder.load(msg);
+		for (int i = 0; i < REFERENCE_RUNS; i++) reference.search(msg);
 		
+		long max = 0, total = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long t = System.nanoTime();
+			decoder.load(msg);
+			t = System.nanoTime() - t;
+			total += t;
+			max = Math.max(max, t);
+		}
 		
-		int msgsForEachInstance = RUN_TOTAL_MSGS / INSTANCES;
+		long refMax = 0, refTotal = 0;
+		for (int i = 0; i < REFERENCE_RUNS; i++) {
+			long t = System.nanoTime();
+			reference.search(msg);
+			t = System.nanoTime() - t;
+			refTotal += t;
+			refMax = Math.max(refMax, t);
+		}
 		
-		int totalMsgs = 0;
-		int bitFlipCount = 0;
-		int droppedByteCount = 0;
+		System.out.println("RECE-232 Worst-case Gap Alignment: " + msg.length + " bytes");
+		System.out.println();
+		System.out.println("  Tabulated search (full load):");
+		System.out.printf ("    Mean latency: %8.2f us\n", total / 1000. / RUNS);
+		System.out.printf ("    Max latency:  %8.2f us\n", max / 1000.);
+		System.out.println("  Recursive search (gaps only):");
+		System.out.printf ("    Mean latency: %8.2f us\n", refTotal / 1000. / REFERENCE_RUNS);
+		System.out.printf ("    Max latency:  %8.2f us\n", refMax / 1000.);
+		System.out.println();
+	}
+	
+	@Test
+	public void testBatchThroughput() {
+		final int MESSAGES = 1 << 20;
+		final int RUNS = 5;
 		
-		int modifiedMessageCount = 0;
-		int recoveredCount = 0;
-		int unrecoverableCount = 0;
-		int wrongCount = 0;
+		// Noisy 1-7 longword messages, as in the error rate tests
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232NoiseSimulator channel = new RECE232NoiseSimulator(6720522, 0.001, 0.0025);
+		SplittableRandom rand = channel.random();
+		byte[][] messages = new byte[MESSAGES][];
+		byte[] rx = new byte[RECE232.messageLength(7)];
+		for (int i = 0; i < MESSAGES; i++) {
+			int n = 1 + rand.nextInt(7);
+			encoder.init((byte)rand.nextInt(64), n);
+			for (int j = 0; j < n; j++) encoder.appendLongword(rand.nextInt());
+			byte[] msg = encoder.finish();
+			messages[i] = Arrays.copyOf(rx, channel.transmit(msg, 0, msg.length, rx, 0));
+		}
 		
-		double avgMsgLength = 0;
-
-		Random seedGen = new Random(6720522);
+		System.out.println("RECE-232 Batch Decode Throughput: " + MESSAGES + " messages");
+		System.out.println();
+		double base = 0;
+		for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			RECE232BatchDecoder batch = RECE232.getBatchDecoder(RECE232::getDecoder, pool);
+			RECE232BatchDecoder.Results results = batch.decode(messages); // Warmup
+			long best = Long.MAX_VALUE;
+			for (int r = 0; r < RUNS; r++) {
+				long t = System.nanoTime();
+				batch.decode(Arrays.asList(messages), results);
+				best = Math.min(best, System.nanoTime() - t);
+			}
+			pool.shutdown();
+			
+			double rate = MESSAGES / (best / 1e9);
+			if (threads == 1) base = rate;
+			System.out.printf("  %3d threads: %12.0f msg/s (%.2fx)\n", threads, rate, rate / base);
+		}
+		System.out.println();
+	}
+	
+	@Test
+	public void testCaptureScanThroughput(@TempDir Path dir) throws IOException {
+		final int MESSAGES = 4 << 20;
+		final int RUNS = 3;
 		
-		ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
-		Collection<Callable<Benchmarker>> callables = new ArrayList<>();
-		IntStream.rangeClosed(1, INSTANCES).forEach(i -> {
-			callables.add(() -> {
-				Random rand = new Random(seedGen.nextLong());
-				Benchmarker bch = new Benchmarker(
-						minIntsInMessage, maxIntsInMessage, msgsForEachInstance, probBitFlip, probDroppedByte,
-						rand,
-						skipRecoveryOnCorruptedChecksum, failCorruptedChecksum);
-				bch.run();
-				//System.out.println("Completed benchmark " + i);
-				return bch;
-			});
-		});
-		List<Future<Benchmarker>> taskFutureList = executorService.invokeAll(callables);
-		for (Future<Benchmarker> future : taskFutureList) {
-			Benchmarker bch = future.get();
-			totalMsgs += bch.totalMsgs;
-			bitFlipCount += bch.bitFlipCount;
-			droppedByteCount += bch.droppedByteCount;
-			modifiedMessageCount += bch.modifiedMessageCount;
-			recoveredCount += bch.recoveredCount;
-			unrecoverableCount += bch.unrecoverableCount;
-			wrongCount += bch.wrongCount;
-			avgMsgLength += bch.avgMsgLength / INSTANCES;
+		// Noisy 1-7 longword messages, one per line
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232NoiseSimulator channel = new RECE232NoiseSimulator(6720522, 0.001, 0.0025);
+		SplittableRandom rand = channel.random();
+		Path file = dir.resolve("capture.txt");
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+			byte[] msg = new byte[RECE232.messageLength(7)];
+			byte[] rx = new byte[msg.length];
+			for (int i = 0; i < MESSAGES; i++) {
+				int n = 1 + rand.nextInt(7);
+				encoder.init((byte)rand.nextInt(64), n, msg, 0);
+				for (int j = 0; j < n; j++) encoder.appendLongword(rand.nextInt());
+				out.write(rx, 0, channel.transmit(msg, 0, encoder.end(), rx, 0));
+				out.write('\n');
+			}
+		}
+		
+		RECE232CaptureScanner scanner = RECE232.getCaptureScanner(RECE232::getDecoder, 7);
+		RECE232CaptureScanner.Stats stats = scanner.scan(file); // Warmup
+		long best = Long.MAX_VALUE;
+		for (int r = 0; r < RUNS; r++) {
+			long t = System.nanoTime();
+			stats = scanner.scan(file);
+			best = Math.min(best, System.nanoTime() - t);
 		}
 		
-		String intfrm = "%"+(totalMsgs + "").length()+"d / " + totalMsgs + " (%.5f%%)\n";
-		System.out.println("RECE-232 Test Summary: " + param);
+		System.out.println("RECE-232 Capture Scan Throughput: " + stats.bytes() + " bytes, "
+				+ ForkJoinPool.commonPool().getParallelism() + " threads");
 		System.out.println();
-		//System.out.println("  Bit flip probability:     " + probBitFlip);
-		//System.out.println("  Dropped byte probability: " + probDroppedByte);
-		//System.out.println();
-		System.out.printf ("  Messages with generated errors: " + intfrm, modifiedMessageCount, 100. * modifiedMessageCount / totalMsgs);
-		System.out.printf ("  Average message length: %.2f bytes\n", avgMsgLength);
-		int et = modifiedMessageCount;
-		String intfrm_e = "%"+(et + "").length()+"d / " + et + " (%.5f%%)\n";
+		System.out.printf ("  Throughput: %8.1f MB/s\n", stats.bytes() / (best / 1e9) / 1e6);
+		System.out.printf ("  Messages:   %8.0f msg/s\n", (stats.goodFrames() + stats.correctedFrames() + stats.rejectedFrames()) / (best / 1e9));
 		System.out.println();
-		System.out.println("  Flipped bits:  " + bitFlipCount);
-		System.out.println("  Dropped bytes: " + droppedByteCount);
+	}
+	
+	@Test
+	public void testGatewayThroughput() throws IOException, InterruptedException {
+		final int MESSAGES = 1 << 19;
+		final int LONGWORDS = 4;
+		
+		LongAdder frames = new LongAdder();
+		System.out.println("RECE-232 Gateway Throughput: " + MESSAGES + " messages of " + LONGWORDS + " longwords over loopback, "
+				+ (RECE232Gateway.virtualThreadsAvailable() ? "virtual" : "platform") + " threads");
+		System.out.println();
+		for (int connections : new int[] {1, 16, 256, 1024}) {
+			try (RECE232Gateway gateway = RECE232.getGateway(RECE232::getDecoder, LONGWORDS, (source, dec) -> frames.increment())) {
+				InetSocketAddress address = gateway.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+				RECE232LoadGenerator load = new RECE232LoadGenerator(connections, MESSAGES / connections, LONGWORDS);
+				load.run(address); // Warmup
+				awaitFrames(frames, MESSAGES, gateway); // The senders return before the gateway has read everything
+				
+				frames.reset();
+				long t = System.nanoTime();
+				load.run(address);
+				awaitFrames(frames, MESSAGES, gateway);
+				long elapsed = System.nanoTime() - t;
+				
+				System.out.printf("  %4d connections: %10.0f msg/s %8.1f MB/s\n", connections,
+						MESSAGES / (elapsed / 1e9), MESSAGES * (RECE232.messageLength(LONGWORDS) + 1.0) / (elapsed / 1e3));
+			}
+		}
 		System.out.println();
-		System.out.printf ("  Recovered errors:     " + intfrm_e, recoveredCount, 100. * recoveredCount / et);
-		System.out.printf ("  Unrecoverable errors: " + intfrm_e, unrecoverableCount, 100. * unrecoverableCount / et);
-		System.out.printf ("  Undetected errors:    " + intfrm_e, wrongCount, 100. * wrongCount / et);
+	}
+	
+	private static void awaitFrames(LongAdder frames, long count, RECE232Gateway gateway) throws InterruptedException {
+		long deadline = System.nanoTime() + 60_000_000_000L;
+		while (frames.sum() < count) {
+			if (System.nanoTime() - deadline > 0) {
+				fail("Gateway decoded " + frames.sum() + " of " + count + " frames, " + gateway.rejectedFrames() + " rejected");
+			}
+			Thread.sleep(1);
+		}
+	}
+	
+	@Test
+	public void testPipelineThroughput() throws IOException {
+		final int MESSAGES = 1 << 18;
+		final int LONGWORDS = 4;
+		
+		// Noisy capture, so decoding outweighs framing
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232NoiseSimulator channel = new RECE232NoiseSimulator(1302, 0.002, 0.005);
+		ByteArrayOutputStream capture = new ByteArrayOutputStream();
+		byte[] rx = new byte[2 * RECE232.messageLength(LONGWORDS)];
+		for (int i = 0; i < MESSAGES; i++) {
+			encoder.init((byte)(i & 0x3f), LONGWORDS);
+			for (int j = 0; j < LONGWORDS; j++) encoder.appendLongword(i * 31 + j);
+			byte[] msg = encoder.finish();
+			capture.write(rx, 0, channel.transmit(msg, 0, msg.length, rx, 0));
+			capture.write('\n');
+		}
+		byte[] data = capture.toByteArray();
+		final int CHUNK = 4096; // Typical read size
 		
+		System.out.println("RECE-232 Pipeline Throughput: " + MESSAGES + " noisy messages of " + LONGWORDS + " longwords, "
+				+ Runtime.getRuntime().availableProcessors() + " processors");
 		System.out.println();
-		for (Entry<String, String> corrupted : Benchmarker.corruptedList.entrySet()) {
-			//System.out.println(corrupted.getKey() + " -> " + corrupted.getValue());
+		for (int round = 0; round < 2; round++) { // First round is warmup
+			RECE232StreamDecoder streamDec = RECE232.getStreamDecoder(RECE232.getDecoder(), LONGWORDS, (dec) -> { });
+			long t = System.nanoTime();
+			for (int pos = 0; pos < data.length; pos += CHUNK) streamDec.feed(data, pos, Math.min(CHUNK, data.length - pos));
+			streamDec.finish();
+			long elapsed = System.nanoTime() - t;
+			if (round > 0) System.out.printf("  Stream decoder on the reader: %10.0f msg/s\n", MESSAGES / (elapsed / 1e9));
+			
+			for (int workers : new int[] {1, 2, 4}) {
+				for (RECE232Pipeline.WaitStrategy strategy : RECE232Pipeline.WaitStrategy.values()) {
+					if (strategy == RECE232Pipeline.WaitStrategy.SPIN && Runtime.getRuntime().availableProcessors() < workers + 2) continue;
+					RECE232Pipeline pipeline = RECE232.getPipeline(RECE232::getDecoder, LONGWORDS, (frame) -> { })
+							.setWorkers(workers).setWaitStrategy(strategy).start();
+					t = System.nanoTime();
+					try (RECE232Pipeline p = pipeline) {
+						for (int pos = 0; pos < data.length; pos += CHUNK) p.feed(data, pos, Math.min(CHUNK, data.length - pos));
+					}
+					elapsed = System.nanoTime() - t;
+					if (round > 0) System.out.printf("  %d workers, %-5s:             %10.0f msg/s  %6d reader stalls\n", workers, strategy,
+							MESSAGES / (elapsed / 1e9), pipeline.stalls());
+				}
+			}
 		}
+		System.out.println();
+	}
+	
+	@Test
+	public void testErrorRates() {
+		/* Test Variables */
+		final long RUN_TOTAL_MSGS = 100_000_000; // For each grid point
+		
+		final boolean[] SKIP_IF_NO_CHK = {true, false};
+		final boolean[] FAIL_CORRUPTED_CHK = {false};
+		final int[][] SIZES = {{1, 1}, {2, 2}, {4, 4}, {6, 6}};
+		/******************/
+		
+		RECE232Sweep sweep = new RECE232Sweep(6720522)
+				.addGrid(new int[][] {{1, 7}}, new double[] {0.001}, new double[] {0.0025}, SKIP_IF_NO_CHK, FAIL_CORRUPTED_CHK)
+				.addGrid(SIZES, new double[] {0.001}, new double[] {0, 0.0025}, SKIP_IF_NO_CHK, FAIL_CORRUPTED_CHK)
+				.addGrid(SIZES, new double[] {0.002}, new double[] {0.005},     SKIP_IF_NO_CHK, FAIL_CORRUPTED_CHK)
+				.addGrid(SIZES, new double[] {0.004}, new double[] {0.01},      SKIP_IF_NO_CHK, FAIL_CORRUPTED_CHK);
+		sweep.run(RUN_TOTAL_MSGS);
+		
+		System.out.println("RECE-232 Error Rates");
+		sweep.writeCsv(System.out);
+		System.out.println();
+	}
+	
+	@Test
+	public void testBurstErrorRates() {
+		/* Test Variables */
+		final long RUN_TOTAL_MSGS = 10_000_000; // For each grid point
+		
+		final boolean[] SKIP_IF_NO_CHK = {true, false};
+		final boolean[] FAIL_CORRUPTED_CHK = {false, true};
+		final int[][] SIZES = {{1, 7}, {1, 1}, {4, 4}};
+		/******************/
+		
+		// Clean background with a 0.01% chance per byte of a 20-byte burst at 5% BER, as from a motor start
+		RECE232Sweep bursts = new RECE232Sweep(6720522)
+				.addGrid(SIZES, new double[] {0}, new double[] {0}, SKIP_IF_NO_CHK, FAIL_CORRUPTED_CHK)
+				.setBurst(0.0001, 20, 0.05, 0.01);
+		bursts.run(RUN_TOTAL_MSGS);
+		
+		// Background noise plus dropouts averaging 4 bytes
+		RECE232Sweep dropouts = new RECE232Sweep(6720522)
+				.addGrid(SIZES, new double[] {0.001}, new double[] {0}, SKIP_IF_NO_CHK, FAIL_CORRUPTED_CHK)
+				.setDropout(0.0005, 4);
+		dropouts.run(RUN_TOTAL_MSGS);
+		
+		System.out.println("RECE-232 Burst Error Rates");
+		bursts.writeCsv(System.out);
+		System.out.println();
+		System.out.println("RECE-232 Dropout Error Rates");
+		dropouts.writeCsv(System.out);
+		System.out.println();
 	}
 	
 }
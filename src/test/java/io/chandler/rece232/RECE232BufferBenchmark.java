@@ -0,0 +1,134 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+import io.chandler.rece232.RECE232.RECE232Encoder;
+
+/**
+ * JMH decoder cost per message when loading from an array, or from heap, direct and read-only buffers,
+ *  as a native serial driver would hand them over.
+ * Buffer messages are views into one shared buffer, so nothing is allocated per load.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RECE232BufferBenchmark {
+	
+	private static final int MESSAGES = 1024; // Power of two
+	
+	@Param({"4", "16"})
+	public int nLongwords;
+	
+	/*
+	 * clean: unmodified messages
+	 * noisy: 0.4% bit flips and 1% dropped characters, keeping only modified messages
+	 */
+	@Param({"clean", "noisy"})
+	public String input;
+	
+	private final RECE232Decoder decoder = RECE232.getDecoder().setSkipRecoveryOnCorruptedChecksum(false);
+	private byte[][] arrays;
+	private int next = 0;
+	
+	/**
+	 * The same messages as buffers, kept apart so the array benchmark doesn't run once per buffer type
+	 */
+	@State(Scope.Thread)
+	public static class Buffers {
+		@Param({"heap", "direct", "readonly"})
+		public String source;
+		
+		private ByteBuffer[] buffers;
+		
+		@Setup
+		public void setup(RECE232BufferBenchmark bench) {
+			byte[][] arrays = bench.arrays;
+			int total = 0;
+			for (byte[] msg : arrays) total += msg.length;
+			ByteBuffer all = source.equals("direct") ? ByteBuffer.allocateDirect(total) : ByteBuffer.allocate(total);
+			for (byte[] msg : arrays) all.put(msg);
+			if (source.equals("readonly")) all = all.asReadOnlyBuffer();
+			buffers = new ByteBuffer[MESSAGES];
+			for (int m = 0, pos = 0; m < MESSAGES; pos += arrays[m++].length) {
+				all.clear().position(pos);
+				all.limit(pos + arrays[m].length);
+				buffers[m] = all.slice();
+			}
+		}
+	}
+	
+	@Setup
+	public void setup() {
+		Random rand = new Random(6720522);
+		RECE232NoiseSimulator channel = new RECE232NoiseSimulator(6720522, 0.004, 0.01);
+		RECE232Encoder encoder = RECE232.getEncoder();
+		arrays = new byte[MESSAGES][];
+		for (int m = 0; m < MESSAGES;) {
+			encoder.init((byte)rand.nextInt(64), nLongwords);
+			for (int i = 0; i < nLongwords; i++) encoder.appendLongword(rand.nextInt());
+			byte[] msg = encoder.finish();
+			if (input.equals("noisy")) {
+				byte[] noisy = new byte[msg.length];
+				int len = channel.transmit(msg, 0, msg.length, noisy, 0);
+				if (!channel.modified()) continue;
+				msg = Arrays.copyOf(noisy, len);
+			}
+			arrays[m++] = msg;
+		}
+	}
+	
+	@Benchmark
+	public boolean loadArray() {
+		return decoder.load(arrays[next++ & (MESSAGES - 1)]);
+	}
+	
+	@Benchmark
+	public boolean loadBuffer(Buffers b) {
+		return decoder.load(b.buffers[next++ & (MESSAGES - 1)]);
+	}
+}
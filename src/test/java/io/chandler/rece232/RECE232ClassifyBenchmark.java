@@ -0,0 +1,114 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH comparison of range-comparison and table-driven character classification, as done per character
+ *  during gap alignment: out of range, the expected class for the position, or the other class.
+ * The input is encoder output with 2% of characters replaced by random bytes, so branches on the class mispredict.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RECE232ClassifyBenchmark {
+	
+	@Param({"false", "true"})
+	public boolean convertTabs;
+	
+	private final byte[] input = new byte[4096];
+	private byte[] charClass;
+	
+	@Setup
+	public void setup() {
+		Random rand = new Random(6720522);
+		RECE232.RECE232Encoder encoder = RECE232.getEncoder().setUseTabs(convertTabs);
+		for (int off = 0; off + RECE232.messageLength(7) <= input.length; off += RECE232.messageLength(7)) {
+			encoder.init((byte)rand.nextInt(64), 7, input, off);
+			for (int i = 0; i < 7; i++) encoder.appendLongword(rand.nextInt());
+			encoder.end();
+		}
+		for (int i = 0; i < input.length; i++) if (rand.nextInt(50) == 0) input[i] = (byte)rand.nextInt(256);
+		charClass = RECE232.charClasses(convertTabs);
+	}
+	
+	@Benchmark
+	public int comparisons() {
+		int acc = 0;
+		for (int r = 0; r < input.length; r++) {
+			int byt = input[r] & 0xff;
+			if (convertTabs && byt == (byte)'\t') byt = 127;
+			boolean exp5Bit = r % 2 == 0;
+			
+			if (byt < 32 || byt >= 128) {
+				acc += 1;
+			} else if (exp5Bit && byt < 64) {
+				acc += byt - 32;
+			} else if (!exp5Bit && byt >= 64) {
+				acc += byt - 64;
+			} else {
+				acc += 1000;
+			}
+		}
+		return acc;
+	}
+	
+	@Benchmark
+	public int table() {
+		int acc = 0;
+		for (int r = 0; r < input.length; r++) {
+			int c = charClass[input[r] & 0xff];
+			int cls = c & RECE232.CLASS_MASK;
+			
+			if (cls == 0) {
+				acc += 1;
+			} else if (cls == RECE232.CLASS_5BIT << (r & 1)) {
+				acc += c & 0b111111;
+			} else {
+				acc += 1000;
+			}
+		}
+		return acc;
+	}
+}
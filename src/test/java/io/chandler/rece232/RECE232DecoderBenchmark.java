@@ -0,0 +1,111 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+import io.chandler.rece232.RECE232.RECE232Encoder;
+
+/**
+ * JMH decoder cost per message on clean, single-error, noisy and worst-case input.
+ * Each case cycles through a fixed set of messages so branch history can't memorize one line.
+ * Run with -prof gc to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RECE232DecoderBenchmark {
+	
+	private static final int MESSAGES = 1024; // Power of two
+	
+	@Param({"1", "4", "7", "16"})
+	public int nLongwords;
+	
+	/*
+	 * clean:  unmodified messages
+	 * single: one corrupted character per message
+	 * noisy:  0.4% bit flips and 1% dropped characters, keeping only modified messages
+	 * worst:  an in-range bit flip in every longword, so each one enters the correction search
+	 */
+	@Param({"clean", "single", "noisy", "worst"})
+	public String input;
+	
+	private final RECE232Decoder decoder = RECE232.getDecoder().setSkipRecoveryOnCorruptedChecksum(false);
+	private byte[][] messages;
+	private int next = 0;
+	
+	@Setup
+	public void setup() {
+		Random rand = new Random(6720522);
+		RECE232NoiseSimulator channel = new RECE232NoiseSimulator(6720522, 0.004, 0.01);
+		RECE232Encoder encoder = RECE232.getEncoder();
+		List<byte[]> list = new ArrayList<>();
+		while (list.size() < MESSAGES) {
+			encoder.init((byte)rand.nextInt(64), nLongwords);
+			for (int i = 0; i < nLongwords; i++) encoder.appendLongword(rand.nextInt());
+			byte[] msg = encoder.finish();
+			
+			if (input.equals("single")) {
+				msg[rand.nextInt(msg.length - 3)] ^= 0x80;
+			} else if (input.equals("noisy")) {
+				byte[] noisy = new byte[msg.length];
+				int len = channel.transmit(msg, 0, msg.length, noisy, 0);
+				if (!channel.modified()) continue;
+				msg = Arrays.copyOf(noisy, len);
+			} else if (input.equals("worst")) {
+				for (int i = 0; i < nLongwords; i++) msg[i*8 + rand.nextInt(8)] ^= 1 << rand.nextInt(5);
+			}
+			list.add(msg);
+		}
+		messages = list.toArray(new byte[0][]);
+	}
+	
+	@Benchmark
+	public boolean load() {
+		return decoder.load(messages[next++ & (MESSAGES - 1)]);
+	}
+}
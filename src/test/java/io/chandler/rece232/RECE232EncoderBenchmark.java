@@ -0,0 +1,85 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.chandler.rece232.RECE232.RECE232Encoder;
+
+/**
+ * JMH encoder cost per message by longword count
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RECE232EncoderBenchmark {
+	
+	@Param({"1", "2", "4", "7", "16"})
+	public int nLongwords;
+	
+	private final RECE232Encoder encoder = RECE232.getEncoder();
+	private int[] longwords;
+	private byte[] dst;
+	
+	@Setup
+	public void setup() {
+		Random rand = new Random(2019);
+		longwords = new int[nLongwords];
+		for (int i = 0; i < nLongwords; i++) longwords[i] = rand.nextInt();
+		dst = new byte[RECE232.messageLength(nLongwords)];
+	}
+	
+	@Benchmark
+	public byte[] allocating() {
+		encoder.init((byte)0x15, nLongwords);
+		for (int lw : longwords) encoder.appendLongword(lw);
+		return encoder.finish();
+	}
+	
+	@Benchmark
+	public int intoArray() {
+		encoder.init((byte)0x15, nLongwords, dst, 0);
+		encoder.appendLongwords(longwords, 0, nLongwords);
+		return encoder.end();
+	}
+}
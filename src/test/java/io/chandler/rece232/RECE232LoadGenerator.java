@@ -0,0 +1,163 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import io.chandler.rece232.RECE232.RECE232Encoder;
+
+/**
+ * Loopback load for {@link RECE232Gateway}: opens many connections, as from a rack of terminal servers,
+ *  and streams newline-delimited messages over each from its own thread.
+ * Messages are encoded before the clock starts, so the senders cost little more than the socket writes.
+ * Connection c sends messages with header c % 64 whose longwords are {@link #longword(int, int, int)}.
+ */
+public final class RECE232LoadGenerator {
+	
+	private final int connections, messagesPerConnection, nLongwords;
+	private double rate = 0; // Messages per second per connection, or 0 for as fast as possible
+	
+	/**
+	 * @param connections Number of connections
+	 * @param messagesPerConnection Messages sent over each connection
+	 * @param nLongwords Longwords per message, at least 2
+	 */
+	public RECE232LoadGenerator(int connections, int messagesPerConnection, int nLongwords) {
+		if (connections <= 0 || messagesPerConnection <= 0 || nLongwords < 2) throw new IllegalArgumentException();
+		this.connections = connections;
+		this.messagesPerConnection = messagesPerConnection;
+		this.nLongwords = nLongwords;
+	}
+	
+	/**
+	 * Paces each connection, like a serial line running at a fixed message rate
+	 * @param messagesPerSecond Messages per second per connection, or 0 for as fast as possible. Default is 0.
+	 * @return
+	 */
+	public RECE232LoadGenerator setRate(double messagesPerSecond) {
+		this.rate = messagesPerSecond;
+		return this;
+	}
+	
+	/**
+	 * Longword i of a message: the connection, then the message number, then a mix of the two
+	 * @param connection Connection index
+	 * @param message Message number on the connection
+	 * @param i Longword index
+	 * @return
+	 */
+	public static int longword(int connection, int message, int i) {
+		if (i == 0) return connection;
+		if (i == 1) return message;
+		return (connection * 65599 + message) * 0x9E3779B9 + i;
+	}
+	
+	/**
+	 * Connects every line, then sends all messages at once and closes the connections
+	 * @param address Gateway address
+	 * @return Nanoseconds from the first write until every connection has sent its messages
+	 * @throws IOException
+	 */
+	public long run(InetSocketAddress address) throws IOException {
+		List<SocketChannel> channels = new ArrayList<>();
+		try {
+			for (int c = 0; c < connections; c++) channels.add(SocketChannel.open(address));
+			
+			CountDownLatch go = new CountDownLatch(1);
+			AtomicReference<IOException> failure = new AtomicReference<>();
+			List<Thread> senders = new ArrayList<>();
+			for (int c = 0; c < connections; c++) {
+				SocketChannel ch = channels.get(c);
+				byte[] payload = encode(c);
+				Thread t = new Thread(() -> {
+					try {
+						go.await();
+						send(ch, payload);
+						ch.close();
+					} catch (IOException e) {
+						failure.compareAndSet(null, e);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}, "rece232-load-" + c);
+				senders.add(t);
+				t.start();
+			}
+			
+			long start = System.nanoTime();
+			go.countDown();
+			for (Thread t : senders) t.join();
+			long elapsed = System.nanoTime() - start;
+			if (failure.get() != null) throw failure.get();
+			return elapsed;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} finally {
+			for (SocketChannel ch : channels) ch.close();
+		}
+	}
+	
+	// Every message of a connection, each followed by a newline
+	private byte[] encode(int connection) {
+		int stride = RECE232.messageLength(nLongwords) + 1;
+		byte[] payload = new byte[stride * messagesPerConnection];
+		RECE232Encoder encoder = RECE232.getEncoder();
+		for (int m = 0; m < messagesPerConnection; m++) {
+			encoder.init((byte)(connection % 64), nLongwords, payload, m * stride);
+			for (int i = 0; i < nLongwords; i++) encoder.appendLongword(longword(connection, m, i));
+			payload[m * stride + encoder.end()] = '\n';
+		}
+		return payload;
+	}
+	
+	// Writes the messages that are due, then waits for the next one
+	private void send(SocketChannel ch, byte[] payload) throws IOException {
+		int stride = payload.length / messagesPerConnection;
+		long start = System.nanoTime();
+		int sent = 0;
+		while (sent < messagesPerConnection) {
+			int due = rate == 0 ? messagesPerConnection
+					: (int)Math.min(messagesPerConnection, (System.nanoTime() - start) * rate / 1e9 + 1);
+			if (due > sent) {
+				ByteBuffer buf = ByteBuffer.wrap(payload, sent * stride, (due - sent) * stride);
+				while (buf.hasRemaining()) ch.write(buf);
+				sent = due;
+			} else {
+				LockSupport.parkNanos(1_000_000);
+			}
+		}
+	}
+}
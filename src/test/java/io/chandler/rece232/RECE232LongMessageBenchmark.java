@@ -0,0 +1,101 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.chandler.rece232.RECE232.RECE232Decoder;
+import io.chandler.rece232.RECE232.RECE232Encoder;
+
+/**
+ * JMH decoder cost per message from 1 to 4096 longwords, to check that it grows linearly with length.
+ * Divide the score by nLongwords for the cost per longword.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RECE232LongMessageBenchmark {
+	
+	private static final int INPUT_BYTES = 1 << 22; // Messages per case are limited to about this much input
+	
+	@Param({"1", "4", "16", "64", "256", "1024", "4096"})
+	public int nLongwords;
+	
+	/*
+	 * clean:  unmodified messages
+	 * sparse: an in-range bit flip in one of every 16 longwords, and at least one per message
+	 * dense:  an in-range bit flip in every longword, so the correction search runs the whole length
+	 */
+	@Param({"clean", "sparse", "dense"})
+	public String input;
+	
+	private final RECE232Decoder decoder = RECE232.getDecoder().setSkipRecoveryOnCorruptedChecksum(false);
+	private byte[][] messages;
+	private int next = 0;
+	
+	@Setup
+	public void setup() {
+		Random rand = new Random(5093311);
+		RECE232Encoder encoder = RECE232.getEncoder();
+		messages = new byte[Math.min(1024, Integer.highestOneBit(INPUT_BYTES / RECE232.messageLength(nLongwords)))][];
+		for (int m = 0; m < messages.length; m++) {
+			encoder.init((byte)rand.nextInt(64), nLongwords);
+			for (int i = 0; i < nLongwords; i++) encoder.appendLongword(rand.nextInt());
+			byte[] msg = encoder.finish();
+			
+			int every = input.equals("sparse") ? 16 : 1;
+			if (!input.equals("clean")) {
+				for (int i = rand.nextInt(Math.min(every, nLongwords)); i < nLongwords; i += every) {
+					msg[i*8 + rand.nextInt(8)] ^= 1 << rand.nextInt(5);
+				}
+			}
+			if (!decoder.load(msg)) throw new IllegalStateException("Benchmark message doesn't decode");
+			messages[m] = msg;
+		}
+	}
+	
+	@Benchmark
+	public boolean load() {
+		return decoder.load(messages[next++ & (messages.length - 1)]);
+	}
+}
@@ -0,0 +1,191 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.util.SplittableRandom;
+
+/**
+ * Simulates a noisy serial line with independent bit flips and dropped bytes.
+ * Error positions are drawn as geometric gaps between events, so the cost of a transmission
+ *  is a block copy plus a few operations per error rather than a random draw per bit.
+ * The gaps carry over from one call to the next, making the channel one continuous stream
+ *  that is fully determined by its seed.
+ *
+ * Bursts follow the Gilbert-Elliott model: the line alternates between a good state and a bad
+ *  state with its own error rates, and the time spent in each is geometric in bytes.
+ * A dropout is a burst that loses every byte, as when a connector is knocked loose.
+ *
+ * Each simulator is single-threaded; give each thread its own seed.
+ */
+public final class RECE232NoiseSimulator {
+	
+	private static final int GOOD = 0, BAD = 1;
+	
+	private final SplittableRandom rand;
+	
+	// Per state: ln(1 - p), or 0 if the event never happens
+	private final double[] logFlip = new double[2], logDrop = new double[2];
+	private final double[] logLeave = new double[2]; // Per-byte chance of switching to the other state
+	
+	private int state = GOOD;
+	private long stateGap; // Bytes left in the current state
+	private long flipGap;  // Kept bits before the next flip
+	private long dropGap;  // Bytes before the next drop
+	
+	private boolean modified = false;
+	
+	public long bitFlipCount = 0;
+	public long droppedByteCount = 0;
+	public long burstCount = 0;
+	
+	/**
+	 * @param seed Random seed
+	 * @param probBitFlip Probability of each transmitted bit being flipped
+	 * @param probDroppedByte Probability of each byte being dropped
+	 */
+	public RECE232NoiseSimulator(long seed, double probBitFlip, double probDroppedByte) {
+		if (!(probBitFlip >= 0 && probBitFlip <= 1 && probDroppedByte >= 0 && probDroppedByte <= 1)) {
+			throw new IllegalArgumentException("Probabilities must be between 0 and 1");
+		}
+		this.rand = new SplittableRandom(seed);
+		logFlip[GOOD] = logFlip[BAD] = Math.log1p(-probBitFlip);
+		logDrop[GOOD] = logDrop[BAD] = Math.log1p(-probDroppedByte);
+		enter(GOOD);
+	}
+	
+	/**
+	 * Adds Gilbert-Elliott bursts on top of the background error rates
+	 * @param probBurst Probability of a burst starting at each byte
+	 * @param meanBurstLength Mean burst length in bytes, at least 1
+	 * @param burstBitFlip Probability of each bit being flipped during a burst
+	 * @param burstDroppedByte Probability of each byte being dropped during a burst
+	 * @return
+	 */
+	public RECE232NoiseSimulator setBurst(double probBurst, double meanBurstLength, double burstBitFlip, double burstDroppedByte) {
+		if (!(probBurst >= 0 && probBurst <= 1 && burstBitFlip >= 0 && burstBitFlip <= 1 && burstDroppedByte >= 0 && burstDroppedByte <= 1)) {
+			throw new IllegalArgumentException("Probabilities must be between 0 and 1");
+		}
+		if (!(meanBurstLength >= 1)) throw new IllegalArgumentException("Mean burst length must be at least 1");
+		logLeave[GOOD] = Math.log1p(-probBurst);
+		logLeave[BAD] = Math.log1p(-1 / meanBurstLength);
+		logFlip[BAD] = Math.log1p(-burstBitFlip);
+		logDrop[BAD] = Math.log1p(-burstDroppedByte);
+		enter(GOOD);
+		return this;
+	}
+	
+	/**
+	 * Adds dropouts, bursts in which every byte is lost
+	 * @param probDropout Probability of a dropout starting at each byte
+	 * @param meanDropoutLength Mean dropout length in bytes, at least 1
+	 * @return
+	 */
+	public RECE232NoiseSimulator setDropout(double probDropout, double meanDropoutLength) {
+		return setBurst(probDropout, meanDropoutLength, 0, 1);
+	}
+	
+	/**
+	 * Passes bytes through the channel
+	 * @param src Source array
+	 * @param off Offset of the first byte
+	 * @param len Number of bytes
+	 * @param dst Destination array, with room for len bytes
+	 * @param dstOff Offset in the destination
+	 * @return Number of bytes received
+	 */
+	public int transmit(byte[] src, int off, int len, byte[] dst, int dstOff) {
+		int i = off, end = off + len, o = dstOff;
+		modified = false;
+		while (true) {
+			if (stateGap == 0) {
+				if (state == GOOD) burstCount++;
+				enter(state ^ 1);
+			}
+			
+			// Copy straight through to the next event
+			int run = (int)Math.min(Math.min(end - i, stateGap), Math.min(dropGap, flipGap >>> 3));
+			System.arraycopy(src, i, dst, o, run);
+			i += run;
+			o += run;
+			stateGap -= run;
+			dropGap -= run;
+			flipGap -= 8L * run;
+			if (i == end) break;
+			if (stateGap == 0) continue;
+			
+			modified = true;
+			stateGap--;
+			if (dropGap == 0) {
+				i++;
+				droppedByteCount++;
+				dropGap = gap(logDrop[state]);
+				continue;
+			}
+			
+			// One or more flips land in this byte
+			byte b = src[i++];
+			dropGap--;
+			while (flipGap < 8) {
+				b ^= 1 << flipGap;
+				bitFlipCount++;
+				flipGap += 1 + gap(logFlip[state]);
+			}
+			flipGap -= 8;
+			dst[o++] = b;
+		}
+		return o - dstOff;
+	}
+	
+	/**
+	 * @return True if the last transmission dropped or flipped anything
+	 */
+	public boolean modified() {
+		return modified;
+	}
+	
+	/**
+	 * @return The generator for message content, so a whole run follows from one seed
+	 */
+	public SplittableRandom random() {
+		return rand;
+	}
+	
+	// Redraws the gaps on a state change; the distributions are memoryless, so nothing else carries over
+	private void enter(int state) {
+		this.state = state;
+		stateGap = 1 + gap(logLeave[state]);
+		flipGap = gap(logFlip[state]);
+		dropGap = gap(logDrop[state]);
+	}
+	
+	// Number of non-events before the next event, by inverting the geometric distribution
+	private long gap(double logNoEvent) {
+		if (logNoEvent == 0) return Long.MAX_VALUE / 2;
+		double g = Math.log(1 - rand.nextDouble()) / logNoEvent;
+		return (long)Math.min(g, Long.MAX_VALUE / 2);
+	}
+}
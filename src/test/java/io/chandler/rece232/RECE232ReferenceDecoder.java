@@ -0,0 +1,371 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.util.Arrays;
+
+/**
+ * The decoder as it was before the lookup tables, packed lanes and clean-message screening, kept unchanged as a
+ *  reference for the fuzz tests.
+ */
+final class RECE232ReferenceDecoder {
+	private int nLongwords;
+	private int[] recon;
+	private boolean madeCorrections = false;
+	
+	private boolean skipRecoveryOnCorruptedChecksum = true;
+	private boolean failOnCorruptedChecksum = false;
+	private boolean convertTabs = false;
+	
+	RECE232ReferenceDecoder() { }
+	
+	/**
+	 * By default, the decoder will attempt to detect a partially dropped or checksum and
+	 *   continue anyway if only one of the 3 bytes is invalid. 
+	 * 
+	 * @param doFail true if the decoder should fail whenever the final checksum is corrupted. False by default.
+	 * @return
+	 */
+	public RECE232ReferenceDecoder setFailOnCorruptedChecksum(boolean doFail) {
+		failOnCorruptedChecksum = doFail;
+		return this;
+	}
+	
+	/**
+	 * The decoder performs error correction when the individual longword checksums don't match.
+	 * Set this parameter to true to prevent error correction attempts when the final checksum is partially missing. 
+	 * 
+	 * @param doSkip true if the decoder should not attempt bit flip recovery when final checksum is corrupted. True by default.
+	 * @return
+	 */
+	public RECE232ReferenceDecoder setSkipRecoveryOnCorruptedChecksum(boolean doSkip) {
+		skipRecoveryOnCorruptedChecksum = doSkip;
+		return this;
+	}
+	
+	/**
+	 * Allow tab character in place of non-printable 127 (ASCII DEL)
+	 * @param convertTabs True to detect and convert tabs. Default is false.
+	 * @return
+	 */
+	public RECE232ReferenceDecoder setConvertTabs(boolean convertTabs) {
+		this.convertTabs = convertTabs;
+		return this;
+	}
+	
+	private static final int INCOMPLETE = Integer.MAX_VALUE; // Magic number to signify length mismatch
+	private int calculateGaps(byte[] src, int i, int r, int n, int[] gaps, int gapCount) {
+		nextByte: for (;; i++, r++) {
+			int longwordIndex = r / 8;
+			boolean exp5Bit = r % 2 == 0;
+			if (i >= src.length - 2) { // src.length - 2 is the first fletcher character
+				// Ran through end
+				return r == n ? gapCount : INCOMPLETE; // Have we finished
+			} else if (r == n) {
+				return i == src.length - 3 ? gapCount : INCOMPLETE; // Made it to end
+			} else {
+				// Allow pushing into the first fletcher char, in case there's a gap before there
+				int byt = src[i] & 0xff;
+				if (convertTabs && byt == (byte)'\t') byt = 127;
+				
+				if (byt < 32 || byt >= 128) {
+					// Out of ascii range; consider this a corrupt character
+					if (gaps[longwordIndex] != -1) return INCOMPLETE; // Already counted a gap in this longword
+					gaps[longwordIndex] = r;
+					recon[r] = 0;
+					continue nextByte; // Unconditionally continue to next byte
+				} else if (exp5Bit && byt < 64) {
+					// Is expected 5-bit
+					recon[r] = byt - 32;
+					continue nextByte; // Unconditionally continue to next byte
+				} else if (!exp5Bit && byt >= 64) {
+					// Is expected 6-bit
+					recon[r] = byt - 64;
+					continue nextByte; // Unconditionally continue to next byte
+				} else {
+					
+					// It's not in the expected range, could be a gap or a corrupt character
+					if (gaps[longwordIndex] != -1) return INCOMPLETE; // Already counted a gap in this longword
+					
+					recon[r] = 0; // Set gap
+					gaps[longwordIndex] = r; // Mark index of gap
+					
+					// Try corrupt case
+					int corruptCase = calculateGaps(src, i+1, r+1, n, gaps, gapCount); // Recursive branch
+					if (corruptCase == 0) return corruptCase; // This is best case for sure; just return
+					
+					// Try gap case
+					for (int l = longwordIndex + 1; l < gaps.length; l++) gaps[l] = -1; // Reset following gaps
+					int gapCase = calculateGaps(src, i, r+1, n, gaps, gapCount+1); // Recursive branch
+					
+					// Compare penalties of each case
+					if (corruptCase < gapCase) { // Prefer corrupt
+						for (int l = longwordIndex + 1; l < gaps.length; l++) gaps[l] = -1; // Reset following gaps
+						// Recalculate corrupt case (TODO better way?)
+						continue nextByte; // Unconditionally continue to next byte
+					} else { // Prefer gap
+						// recon & gaps currently contain the result of gap case, so just return
+						return gapCase;
+					}
+				}
+			}
+			//break; // Shall never drop through
+		}
+	}
+	
+	private static final int GOOD_MASK = 0b11111_111111_11111;
+	
+	/**
+	 * Loads a message for decoding.
+	 * If load() returns true, the message contents may be retrieved from the decoder.
+	 * If load() returns false, other method behavior is undefined.
+	 * @param src Message bytes
+	 * @return True if the message was successfully decoded
+	 */
+	public boolean load(byte[] src) {
+		this.madeCorrections = false;
+		int len = src.length;
+		len -= 3; // Subtract fletcher footer, remainder should be n*8b
+		if (len < 7) return false; // below minimum recoverable bytes
+		this.nLongwords = (len + 7) / 8;
+		
+		// Extract fletF
+		// Src is little endian, so these indices are really confusing
+		//  They reflect the ascending array character order, OR the big endian register locations
+		int fF2 = src[src.length - 1] & 0xff;
+		int fF1 = src[src.length - 2] & 0xff;
+		int fF0 = src[src.length - 3] & 0xff;
+		// There are six signature possibilities for a recoverable fletF
+		// ! (F) represents an out-of-range character
+		// 5 (0) is a 5-bit character, 6 (1) is a 6-bit character
+		// !65, 5!5, 56!, 6(G)65, 65(G)5, 656(G)
+		
+		if (convertTabs) {
+			if (fF2 == (byte)'\t') fF2 = 127;
+			if (fF1 == (byte)'\t') fF1 = 127;
+			if (fF0 == (byte)'\t') fF0 = 127;
+		}
+		
+		short fletFErrSig = 0x000;
+		if (fF0 < 32 || fF0 >= 128) fletFErrSig |= 0xF00;
+		else if (fF0 >= 64)         fletFErrSig |= 0x100;
+		if (fF1 < 32 || fF1 >= 128) fletFErrSig |= 0x0F0;
+		else if (fF1 >= 64)         fletFErrSig |= 0x010;
+		if (fF2 < 32 || fF2 >= 128) fletFErrSig |= 0x00F;
+		else if (fF2 >= 64)         fletFErrSig |= 0x001;
+		
+		// Don't allow partial fletF matching
+		if (fletFErrSig != 0x010 && failOnCorruptedChecksum) return false;
+
+		int fletF = 0;   // Final value if good or recoverable
+		int fletFMask = 0; // Final mask if recoverable
+		switch(fletFErrSig) {
+			case 0x010: // Good
+				fletF = ((fF2-0x20) << 11) | ((fF1-0x40) << 5) | ((fF0-0x20) << 0);
+				fletFMask = GOOD_MASK;
+				break;
+			case 0xF10: // First is corrupt
+				fletF = ((fF2-0x20) << 11) | ((fF1-0x40) << 5);
+				fletFMask = 0b11111_111111_00000;
+				break;
+			case 0x0F0: // Second is corrupt
+				fletF = ((fF2-0x20) << 11) | ((fF0-0x20) << 0);
+				fletFMask = 0b11111_000000_11111;
+				break;
+			case 0x01F: // Third is corrupt
+				fletF = ((fF1-0x40) << 5) | ((fF0-0x20) << 0);
+				fletFMask = 0b00000_111111_11111;
+				break;
+			case 0x110: // Gap in first position
+				fletF = ((fF2-0x20) << 11) | ((fF1-0x40) << 5);
+				fletFMask = 0b11111_111111_00000;
+				break;
+			//case 0x000:
+			//case 0xF00:
+			case 0x100: // Gap in second position
+				fletF = ((fF2-0x20) << 11) | ((fF1-0x20) << 0);
+				fletFMask = 0b11111_000000_11111;
+				break;
+			//case 0x001:
+			//case 0xF01:
+			case 0x101: // Gap in third position
+				fletF = ((fF2-0x40) << 5) | ((fF1-0x20) << 0);
+				fletFMask = 0b00000_111111_11111;
+				break;
+			default: // Not recoverable
+				return false;
+		}
+		
+		if (fletFMask != GOOD_MASK) madeCorrections = true;
+		
+		this.recon = new int[nLongwords * 8];
+		int[] gaps = new int[nLongwords];
+		Arrays.fill(gaps, -1);
+		boolean[] badChks = new boolean[nLongwords];
+		
+		if (calculateGaps(src, 0, 0, nLongwords * 8, gaps, 0) == INCOMPLETE) return false; // Recursive gaps calculation
+		
+		// Process checksums or fill gaps
+		for (int n = 0; n < nLongwords; n++) {
+			int gapIdx = gaps[n];
+			if (gapIdx == -1) {
+				// No gaps; just verify checksum
+				if (!verifyReconChk(n*8)) {
+					badChks[n] = true;
+					madeCorrections = true;
+				}
+			} else {
+				int chk = 0;
+				for (int b = n*8; b < n*8 + 8; b++) {
+					if (b == gapIdx) continue;
+					madeCorrections = true;
+					chk ^= recon[b];
+				}
+				recon[gapIdx] = chk ^ 0b111111;
+			}
+		}
+		
+		// Recursively attempt to correct wrong checksums
+		// TODO can improve statistical accuracy by keeping an n-bitflips score and returning the best one
+		// TODO implement a configurable limit to recursive calls
+		return correctChecksums(badChks, false, 0, fletF, fletFMask);
+	}
+	
+	// Recursive correction
+	private boolean correctChecksums(boolean[] badChks, boolean triedNextFletCRepl, int n, int fletF, int fletFMask) {
+		// Base case, OR recovery is disabled w/ a partial fletF
+		if ((skipRecoveryOnCorruptedChecksum && fletFMask != GOOD_MASK) || n == badChks.length) {
+			for (boolean b : badChks) if (b) return false; // Bad checksums still exist (skip recovery must be set)
+			return verifyFletF(fletF, fletFMask);
+		} else if (badChks[n]) {
+			
+			if (!triedNextFletCRepl && n != badChks.length - 1 && badChks[n+1]) {
+				// Next checksum is also bad, so the following fletC byte could be corrupt. Try replacing it.
+				int chk = 0b111111;
+				for (int b = 8; b < 16; b++) {
+					chk ^= recon[b + n*8];
+				}
+				// Try to replace byte with the rest of the checksum
+				recon[n*8 + 11] ^= chk;
+				badChks[n+1] = false;
+				
+				if (correctChecksums(badChks, true, n, fletF, fletFMask)) return true;
+				
+				// Revert
+				recon[n*8 + 11] ^= chk;
+				badChks[n+1] = true;
+				if (correctChecksums(badChks, true, n, fletF, fletFMask)) return true;
+				
+				return false;
+			} else {
+				// Partial fletcher
+				int chk = 0b111111;
+				for (int b = 0; b < 8; b++) {
+					chk ^= recon[b + n*8];
+				}
+				for (int b = 0; b < 8; b++) {
+					// Try to replace byte with the rest of the checksum
+					recon[b + n*8] ^= chk;
+					badChks[n] = false;
+					//verifyFletF(fletF, fletFMask)
+					
+					// TODO verify fletC even if no error
+					// Contains a partial fletcher followup
+					if (n != badChks.length - 1) {
+						int partial = calReconFletC((n+1)*8);
+						int cmp = recon[n*8 + 11];
+						
+						if (partial == cmp) {
+							if (correctChecksums(badChks, false, n+1, fletF, fletFMask)) return true;
+						}
+					} else {
+						if (correctChecksums(badChks, false, n+1, fletF, fletFMask)) return true;
+					}
+					// Revert
+					recon[b + n*8] ^= chk;
+					badChks[n] = true;
+				}
+				return false;
+			}
+		} else  {
+			return correctChecksums(badChks, false, n+1, fletF, fletFMask);
+		}
+	}
+	
+	private boolean verifyFletF(int fletF, int fletFMask) {
+		int chk = RECE232.crc16dnp_bit_1(RECE232.CRC_INIT, recon[3]);
+		for (int r = 0; r < recon.length; r += 8) {
+			int lw = getLongword(r/8);
+			chk = RECE232.crc16dnp_bit_4(chk, lw);
+			if (r + 11 < recon.length && RECE232.partialCRC(chk) != recon[r + 11]) return false;
+		}
+		return (chk & fletFMask) == (fletF & 0xffff);
+		
+	}
+	
+	private boolean verifyReconChk(int offset) {
+		int chk = 0;
+		for (int b = 0; b < 8; b++) {
+			chk ^= recon[b + offset];
+		}
+		return chk == 0b111111;
+	}
+	
+	private int calReconFletC(int len) {
+		int chk = RECE232.crc16dnp_bit_1(RECE232.CRC_INIT, recon[3]);
+		for (int r = 0; r < len; r += 8) {
+			int lw = getLongword(r/8);
+			chk = RECE232.crc16dnp_bit_4(chk, lw);
+		}
+		return RECE232.partialCRC(chk);
+	}
+	
+	public int nLongwords() {
+		return nLongwords;
+	}
+	
+	public byte getHeader6Bit() {
+		return (byte)recon[3];
+	}
+	
+	public int getLongword(int i) {
+		return  recon[i*8 + 0] <<  0 |
+				recon[i*8 + 1] <<  5 |
+				recon[i*8 + 2] << 11 |
+				recon[i*8 + 4] << 16 |
+				recon[i*8 + 5] << 21 |
+				recon[i*8 + 6] << 27;
+	}
+	
+	/**
+	 * Checks if the decoder attempted to correct message errors
+	 * @return
+	 */
+	public boolean madeCorrections() {
+		return madeCorrections;
+	}
+}
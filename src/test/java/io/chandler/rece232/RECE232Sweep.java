@@ -0,0 +1,202 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import io.chandler.rece232.RECE232Benchmarks.Benchmarker;
+
+/**
+ * Runs the transmission simulator over a grid of message sizes, channel error rates and decoder settings,
+ *  splitting every grid point into fixed-size chunks that run in parallel on a fork-join pool.
+ * Each chunk is seeded from the sweep seed and its position in the grid, so results don't depend
+ *  on the number of cores or the order in which chunks finish.
+ */
+public final class RECE232Sweep {
+	
+	private static final int CHUNK = 1 << 20; // Messages per task
+	
+	/**
+	 * One grid point and its totals
+	 */
+	public static final class Point {
+		public final int minLongwords, maxLongwords;
+		public final double probBitFlip, probDroppedByte;
+		public final boolean skipRecoveryOnCorruptedChecksum, failOnCorruptedChecksum;
+		
+		public long messages, bytes, bitFlips, droppedBytes, bursts;
+		public long modified, recovered, unrecoverable, undetected;
+		
+		Point(int minLongwords, int maxLongwords, double probBitFlip, double probDroppedByte,
+				boolean skipRecoveryOnCorruptedChecksum, boolean failOnCorruptedChecksum) {
+			this.minLongwords = minLongwords;
+			this.maxLongwords = maxLongwords;
+			this.probBitFlip = probBitFlip;
+			this.probDroppedByte = probDroppedByte;
+			this.skipRecoveryOnCorruptedChecksum = skipRecoveryOnCorruptedChecksum;
+			this.failOnCorruptedChecksum = failOnCorruptedChecksum;
+		}
+		
+		synchronized void reset() {
+			messages = bytes = bitFlips = droppedBytes = bursts = 0;
+			modified = recovered = unrecoverable = undetected = 0;
+		}
+		
+		synchronized void add(Benchmarker bch, RECE232NoiseSimulator channel) {
+			messages += bch.totalMsgs;
+			bytes += bch.msgLength;
+			bitFlips += channel.bitFlipCount;
+			droppedBytes += channel.droppedByteCount;
+			bursts += channel.burstCount;
+			modified += bch.modifiedMessageCount;
+			recovered += bch.recoveredCount;
+			unrecoverable += bch.unrecoverableCount;
+			undetected += bch.wrongCount;
+		}
+	}
+	
+	private final List<Point> points = new ArrayList<>();
+	private final long seed;
+	private double[] burst = null; // probBurst, meanBurstLength, burstBitFlip, burstDroppedByte
+	
+	/**
+	 * @param seed Seed for the whole sweep
+	 */
+	public RECE232Sweep(long seed) {
+		this.seed = seed;
+	}
+	
+	/**
+	 * Adds a single grid point
+	 * @return
+	 */
+	public RECE232Sweep addPoint(int minLongwords, int maxLongwords, double probBitFlip, double probDroppedByte,
+			boolean skipRecoveryOnCorruptedChecksum, boolean failOnCorruptedChecksum) {
+		points.add(new Point(minLongwords, maxLongwords, probBitFlip, probDroppedByte,
+				skipRecoveryOnCorruptedChecksum, failOnCorruptedChecksum));
+		return this;
+	}
+	
+	/**
+	 * Adds every combination of the given values
+	 * @param longwordRanges {min, max} pairs of longwords per message
+	 * @param probBitFlips Bit flip probabilities
+	 * @param probDroppedBytes Dropped byte probabilities
+	 * @param skipRecovery Values for {@link RECE232.RECE232Decoder#setSkipRecoveryOnCorruptedChecksum(boolean)}
+	 * @param failOnCorrupted Values for {@link RECE232.RECE232Decoder#setFailOnCorruptedChecksum(boolean)}
+	 * @return
+	 */
+	public RECE232Sweep addGrid(int[][] longwordRanges, double[] probBitFlips, double[] probDroppedBytes,
+			boolean[] skipRecovery, boolean[] failOnCorrupted) {
+		for (int[] range : longwordRanges)
+			for (double flip : probBitFlips)
+				for (double drop : probDroppedBytes)
+					for (boolean skip : skipRecovery)
+						for (boolean fail : failOnCorrupted)
+							addPoint(range[0], range[1], flip, drop, skip, fail);
+		return this;
+	}
+	
+	/**
+	 * Applies Gilbert-Elliott bursts to every grid point
+	 * @see RECE232NoiseSimulator#setBurst(double, double, double, double)
+	 * @return
+	 */
+	public RECE232Sweep setBurst(double probBurst, double meanBurstLength, double burstBitFlip, double burstDroppedByte) {
+		this.burst = new double[] {probBurst, meanBurstLength, burstBitFlip, burstDroppedByte};
+		return this;
+	}
+	
+	/**
+	 * Applies dropouts to every grid point
+	 * @see RECE232NoiseSimulator#setDropout(double, double)
+	 * @return
+	 */
+	public RECE232Sweep setDropout(double probDropout, double meanDropoutLength) {
+		return setBurst(probDropout, meanDropoutLength, 0, 1);
+	}
+	
+	/**
+	 * Simulates every grid point on all cores, replacing the totals of any earlier run
+	 * @param messagesPerPoint Number of messages to send at each grid point
+	 * @return The grid points with their totals, in the order they were added
+	 */
+	public List<Point> run(long messagesPerPoint) {
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int p = 0; p < points.size(); p++) {
+			Point point = points.get(p);
+			point.reset();
+			int chunk = 0;
+			for (long done = 0; done < messagesPerPoint; done += CHUNK, chunk++) {
+				int count = (int)Math.min(CHUNK, messagesPerPoint - done);
+				long chunkSeed = new SplittableRandom(seed ^ ((long)p << 32 | chunk)).nextLong();
+				tasks.add(ForkJoinTask.adapt(() -> {
+					RECE232NoiseSimulator channel = new RECE232NoiseSimulator(chunkSeed, point.probBitFlip, point.probDroppedByte);
+					if (burst != null) channel.setBurst(burst[0], burst[1], burst[2], burst[3]);
+					Benchmarker bch = new Benchmarker(point.minLongwords, point.maxLongwords, count, channel,
+							point.skipRecoveryOnCorruptedChecksum, point.failOnCorruptedChecksum);
+					point.add(bch.run(), channel);
+				}));
+			}
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try {
+			pool.invoke(ForkJoinTask.adapt(() -> { ForkJoinTask.invokeAll(tasks); }));
+		} finally {
+			pool.shutdown();
+		}
+		return points;
+	}
+	
+	/**
+	 * Writes one CSV row per grid point, with rates as fractions of the modified messages
+	 * @param out Destination
+	 */
+	public void writeCsv(PrintStream out) {
+		out.println("min_longwords,max_longwords,bit_flip,dropped_byte,burst,burst_length,burst_bit_flip,burst_dropped_byte,"
+				+ "skip_recovery,fail_on_corrupted_checksum,messages,avg_length,bit_flips,dropped_bytes,bursts,"
+				+ "modified,recovered,unrecoverable,undetected,recovered_rate,unrecoverable_rate,undetected_rate");
+		double[] b = burst == null ? new double[] {0, 1, 0, 0} : burst;
+		for (Point p : points) {
+			double et = Math.max(1, p.modified);
+			out.println(String.format(Locale.ROOT,
+					"%d,%d,%s,%s,%s,%s,%s,%s,%b,%b,%d,%.2f,%d,%d,%d,%d,%d,%d,%d,%.7f,%.7f,%.9f",
+					p.minLongwords, p.maxLongwords, p.probBitFlip, p.probDroppedByte, b[0], b[1], b[2], b[3],
+					p.skipRecoveryOnCorruptedChecksum, p.failOnCorruptedChecksum,
+					p.messages, p.bytes / (double)Math.max(1, p.messages), p.bitFlips, p.droppedBytes, p.bursts,
+					p.modified, p.recovered, p.unrecoverable, p.undetected,
+					p.recovered / et, p.unrecoverable / et, p.undetected / et));
+		}
+	}
+}
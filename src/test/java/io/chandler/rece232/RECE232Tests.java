@@ -26,16 +26,52 @@ For more information, please refer to <https://unlicense.org>
  */
 package io.chandler.rece232;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import io.chandler.rece232.RECE232;
 import io.chandler.rece232.RECE232.RECE232Decoder;
@@ -53,6 +89,37 @@ public class RECE232Tests {
 		assertEquals(0, dec.getLongword(0));
 	}
 	
+	@Test public void testCRCTables() {
+		// Every 16-bit register against every byte, one register per comparison
+		int[] expected = new int[256], actual = new int[256];
+		for (int crc = 0; crc < 0x10000; crc++) {
+			for (int b = 0; b < 256; b++) {
+				expected[b] = RECE232.crc16dnp_bit_1(crc, b);
+				actual[b] = RECE232.crc16dnp_tab_1(crc, b);
+			}
+			assertArrayEquals(expected, actual, "crc " + crc);
+		}
+		// Every 16-bit register against every byte in each longword lane
+		expected = new int[256 * 4];
+		actual = new int[256 * 4];
+		for (int crc = 0; crc < 0x10000; crc++) {
+			for (int k = 0; k < 4; k++) {
+				for (int b = 0; b < 256; b++) {
+					int lw = b << (8*k);
+					expected[k * 256 + b] = RECE232.crc16dnp_bit_4(crc, lw);
+					actual[k * 256 + b] = RECE232.crc16dnp_tab_4(crc, lw);
+				}
+			}
+			assertArrayEquals(expected, actual, "crc " + crc);
+		}
+		// Mixed lanes
+		Random rand = new Random(2019);
+		for (int i = 0; i < 1_000_000; i++) {
+			int crc = rand.nextInt(0x10000), lw = rand.nextInt();
+			assertEquals(RECE232.crc16dnp_bit_4(crc, lw), RECE232.crc16dnp_tab_4(crc, lw));
+		}
+	}
+	
 	@Test
 	public void testOrdinaryDecode() {
 		RECE232Encoder encoder = RECE232.getEncoder();
@@ -83,6 +150,861 @@ public class RECE232Tests {
 		}
 	}
 	
+	@Test
+	public void testBufferEncode() {
+		RECE232Encoder encoder = RECE232.getEncoder();
+		int[] dataset = {0x3F, -1, -1, -1, 0x01234567};
+		
+		for (boolean useTabs : new boolean[] {false, true}) {
+			encoder.setUseTabs(useTabs);
+			encoder.init((byte)dataset[0], dataset.length - 1);
+			for (int i = 1; i < dataset.length; i++) encoder.appendLongword(dataset[i]);
+			byte[] expected = encoder.finish();
+			assertEquals(useTabs, new String(expected, StandardCharsets.US_ASCII).contains("\t"));
+			
+			byte[] dst = new byte[expected.length + 10];
+			encoder.init((byte)dataset[0], dataset.length - 1, dst, 5);
+			for (int i = 1; i < dataset.length; i++) encoder.appendLongword(dataset[i]);
+			assertEquals(expected.length, encoder.end());
+			assertArrayEquals(expected, Arrays.copyOfRange(dst, 5, 5 + expected.length));
+			
+			for (ByteBuffer buf : new ByteBuffer[] {ByteBuffer.allocate(expected.length + 10), ByteBuffer.allocateDirect(expected.length + 10)}) {
+				buf.position(3);
+				encoder.init((byte)dataset[0], dataset.length - 1, buf);
+				for (int i = 1; i < dataset.length; i++) encoder.appendLongword(dataset[i]);
+				assertEquals(expected.length, encoder.end());
+				assertEquals(3 + expected.length, buf.position());
+				byte[] out = new byte[expected.length];
+				buf.position(3);
+				buf.get(out);
+				assertArrayEquals(expected, out);
+			}
+		}
+		
+		assertThrows(IndexOutOfBoundsException.class, () -> encoder.init((byte)0, 2, new byte[18], 0));
+		assertThrows(BufferOverflowException.class, () -> encoder.init((byte)0, 2, ByteBuffer.allocateDirect(18)));
+	}
+	
+	@Test
+	public void testSliceDecode() {
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232Decoder dec = RECE232.getDecoder();
+		
+		// Long message first so scratch space is reused by the shorter ones
+		for (int n : new int[] {5, 1, 3}) {
+			encoder.init((byte)n, n);
+			for (int i = 0; i < n; i++) encoder.appendLongword(i * 0x01010101);
+			byte[] fin = encoder.finish();
+			
+			byte[] line = new byte[fin.length + 4];
+			System.arraycopy(fin, 0, line, 2, fin.length);
+			line[1] = '\n';
+			line[fin.length + 2] = '\n';
+			
+			ByteBuffer direct = ByteBuffer.allocateDirect(line.length);
+			direct.put(line).position(2).limit(fin.length + 2);
+			ByteBuffer heap = ByteBuffer.wrap(line, 2, fin.length).slice();
+			ByteBuffer[] buffers = {direct, heap, ByteBuffer.wrap(line, 2, fin.length).asReadOnlyBuffer()};
+			
+			for (int corrupt = 0; corrupt < 2; corrupt++) {
+				if (corrupt == 1) { // Read in place through gap alignment and correction too
+					line[2 + 8*(n - 1) + 1] ^= 0x02;
+					direct.put(2 + 8*(n - 1) + 1, line[2 + 8*(n - 1) + 1]);
+				}
+				for (int k = 0; k < 4; k++) {
+					boolean loaded = k == 0 ? dec.load(line, 2, fin.length) : dec.load(buffers[k - 1]);
+					assertTrue(loaded);
+					assertEquals(corrupt == 1, dec.madeCorrections());
+					assertEquals(n, dec.getHeader6Bit());
+					assertEquals(n, dec.nLongwords());
+					for (int i = 0; i < n; i++) assertEquals(i * 0x01010101, dec.getLongword(i));
+				}
+			}
+			assertEquals(2, direct.position());
+			assertFalse(dec.load(line, 2, fin.length + 1));
+		}
+	}
+	
+	@Test
+	public void testErasureHints() {
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232Decoder plain = RECE232.getDecoder().setSkipRecoveryOnCorruptedChecksum(false);
+		RECE232Decoder soft = RECE232.getDecoder().setSkipRecoveryOnCorruptedChecksum(false);
+		
+		// An in-range corruption in the last lane of a longword is tried first when flagged
+		byte[] msg = encoder.init((byte)9, 4).appendLongword(1).appendLongword(2).appendLongword(3).appendLongword(4).finish();
+		msg[8 + 7] ^= 0x01;
+		long[] flags = {1L << (8 + 7)};
+		assertTrue(plain.load(msg, 0, msg.length));
+		assertTrue(soft.load(msg, 0, msg.length, flags));
+		assertTrue(soft.madeCorrections());
+		for (int i = 0; i < 4; i++) assertEquals(i + 1, soft.getLongword(i));
+		assertTrue(soft.correctionNodes <= plain.correctionNodes);
+		assertTrue(soft.load(ByteBuffer.wrap(msg).asReadOnlyBuffer(), flags));
+		assertEquals(3, soft.getLongword(2));
+		assertThrows(IllegalArgumentException.class, () -> soft.load(new byte[65], 0, 65, new long[1]));
+		assertTrue(soft.load(msg, 0, msg.length, null)); // No hints: same as a plain load
+		assertEquals(plain.correctionNodes, soft.correctionNodes);
+		assertTrue(soft.load(ByteBuffer.wrap(msg), null));
+		assertEquals(2, soft.getLongword(1));
+		
+		// UART noise: bytes replaced with garbage and usually flagged, a few false flags, and unflagged drops
+		SplittableRandom rand = new SplittableRandom(2108);
+		int[] longwords = new int[8];
+		int plainOk = 0, softOk = 0, plainWrong = 0, softWrong = 0;
+		for (int m = 0; m < 20000; m++) {
+			int n = 1 + rand.nextInt(8);
+			encoder.init((byte)rand.nextInt(64), n);
+			for (int j = 0; j < n; j++) encoder.appendLongword(longwords[j] = rand.nextInt());
+			byte[] fin = encoder.finish();
+			byte[] rx = new byte[fin.length];
+			long[] erasures = new long[(fin.length + 63) / 64];
+			int len = 0;
+			for (byte b : fin) {
+				if (rand.nextDouble() < 0.002) continue;
+				if (rand.nextDouble() < 0.02) {
+					b = (byte)rand.nextInt(256);
+					if (rand.nextInt(10) != 0) erasures[len >>> 6] |= 1L << len;
+				} else if (rand.nextDouble() < 0.001) {
+					erasures[len >>> 6] |= 1L << len;
+				}
+				rx[len++] = b;
+			}
+			boolean[] ok = {plain.load(rx, 0, len), soft.load(rx, 0, len, erasures)};
+			RECE232Decoder[] decs = {plain, soft};
+			for (int k = 0; k < 2; k++) {
+				if (!ok[k]) continue;
+				boolean right = decs[k].nLongwords() == n;
+				for (int j = 0; right && j < n; j++) right = decs[k].getLongword(j) == longwords[j];
+				if (k == 0 && right) plainOk++;
+				if (k == 0 && !right) plainWrong++;
+				if (k == 1 && right) softOk++;
+				if (k == 1 && !right) softWrong++;
+			}
+		}
+		assertTrue(softOk >= plainOk, softOk + " < " + plainOk);
+		assertTrue(softWrong <= plainWrong, softWrong + " > " + plainWrong);
+	}
+	
+	@Test
+	public void testCorrectionBudget() {
+		RECE232Encoder encoder = RECE232.getEncoder();
+		encoder.init((byte)0x01, 3);
+		encoder.appendLongword(1).appendLongword(5).appendLongword(-234567865);
+		byte[] fin = encoder.finish();
+		fin[1] ^= 1; // Non-obvious bit flips in two longwords
+		fin[9] ^= 1;
+		
+		RECE232Decoder dec = RECE232.getDecoder();
+		assertTrue(dec.load(fin));
+		assertFalse(dec.budgetExhausted());
+		
+		dec.setCorrectionBudget(2);
+		assertFalse(dec.load(fin));
+		assertTrue(dec.budgetExhausted());
+		assertEquals(3, dec.correctionNodes); // Stops at the first node over budget
+		assertTrue(dec.maxCorrectionDepth <= 2); // The node refused doesn't count toward depth
+		
+		dec.setCorrectionBudget(0).setCorrectionDeadline(1_000_000_000L).setBestCandidateSearch(true);
+		assertTrue(dec.load(fin));
+		assertFalse(dec.budgetExhausted());
+		assertTrue(dec.madeCorrections());
+		assertEquals(1, dec.getHeader6Bit());
+		assertEquals(1, dec.getLongword(0));
+		assertEquals(5, dec.getLongword(1));
+		assertEquals(-234567865, dec.getLongword(2));
+	}
+	
+	@Test
+	public void testGapAlignment() {
+		// The tabulated gap search must pick the same alignment as the exhaustive recursion it replaced
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232Decoder dec = RECE232.getDecoder();
+		RECE232Benchmarks.RecursiveGapSearch reference = new RECE232Benchmarks.RecursiveGapSearch();
+		RECE232NoiseSimulator channel = new RECE232NoiseSimulator(5150, 0.01, 0.03);
+		SplittableRandom rand = channel.random();
+		byte[] classes = {' ', '@', 0x01}; // 5-bit, 6-bit and out-of-range characters
+		int aligned = 0, branched = 0;
+		for (int m = 0; m < 100_000; m++) {
+			byte[] rx;
+			if (m % 2 == 0) { // Noisy messages
+				int n = 1 + rand.nextInt(7);
+				encoder.init((byte)rand.nextInt(64), n);
+				for (int j = 0; j < n; j++) encoder.appendLongword(rand.nextInt());
+				byte[] msg = encoder.finish();
+				rx = new byte[msg.length];
+				rx = Arrays.copyOf(rx, channel.transmit(msg, 0, msg.length, rx, 0));
+			} else { // Random character classes, mostly in step, to reach the ambiguous cases
+				rx = new byte[10 + rand.nextInt(50)];
+				for (int i = 0; i < rx.length; i++) rx[i] = rand.nextInt(4) == 0 ? classes[rand.nextInt(3)] : classes[i & 1];
+			}
+			if (rx.length < 10) continue;
+			
+			int gaps = dec.alignGaps(rx, 0, rx.length);
+			int expected = reference.search(rx);
+			assertEquals(expected == Integer.MAX_VALUE ? -1 : expected, gaps, "message " + m);
+			if (gaps < 0) continue;
+			aligned++;
+			if (dec.gapBranches > 0) branched++;
+			for (int n = 0; n < reference.nLongwords; n++) {
+				assertEquals(reference.gaps[n] < 0 ? -1 : reference.gaps[n] % 8, dec.gapLane(n), "message " + m);
+				for (int b = 0; b < 8; b++) assertEquals(reference.recon[n*8 + b], (int)(dec.alignedLanes(n) >>> 8*b) & 0xff, "message " + m);
+			}
+		}
+		assertTrue(aligned > 10_000 && branched > 1_000, aligned + " aligned, " + branched + " branched");
+	}
+	
+	@Test
+	public void testReferenceDecoder() {
+		// Clean, bit-flipped and tab-substituted messages must decode exactly as the original decoder did
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232Decoder[] decoders = new RECE232Decoder[8];
+		RECE232ReferenceDecoder[] references = new RECE232ReferenceDecoder[8];
+		for (int c = 0; c < 8; c++) {
+			decoders[c] = RECE232.getDecoder().setSkipRecoveryOnCorruptedChecksum((c & 1) != 0)
+					.setFailOnCorruptedChecksum((c & 2) != 0).setConvertTabs((c & 4) != 0);
+			references[c] = new RECE232ReferenceDecoder().setSkipRecoveryOnCorruptedChecksum((c & 1) != 0)
+					.setFailOnCorruptedChecksum((c & 2) != 0).setConvertTabs((c & 4) != 0);
+		}
+		SplittableRandom rand = new SplittableRandom(8086);
+		int decoded = 0;
+		for (int m = 0; m < 60_000; m++) {
+			int n = 1 + rand.nextInt(rand.nextInt(10) == 0 ? 20 : 7);
+			int c = rand.nextInt(8);
+			encoder.setUseTabs(rand.nextBoolean());
+			encoder.init((byte)rand.nextInt(64), n);
+			for (int j = 0; j < n; j++) encoder.appendLongword(rand.nextInt());
+			byte[] msg = encoder.finish();
+			
+			switch (m % 3) {
+				case 0: break; // Clean
+				case 1: // Bit flips and drops
+					double pFlip = rand.nextDouble() * 0.03, pDrop = rand.nextDouble() * 0.05;
+					int len = 0;
+					for (byte b : msg) {
+						if (rand.nextDouble() < pDrop) continue;
+						for (int x = 0; x < 8; x++) if (rand.nextDouble() < pFlip) b ^= 1 << x;
+						msg[len++] = b;
+					}
+					msg = Arrays.copyOf(msg, len);
+					break;
+				case 2: // DEL and tab swapped both ways
+					for (int i = 0; i < msg.length; i++) {
+						if (msg[i] == 127 && rand.nextBoolean()) msg[i] = '\t';
+						else if (rand.nextInt(msg.length) == 0) msg[i] = rand.nextBoolean() ? (byte)'\t' : 127;
+					}
+					break;
+			}
+			
+			RECE232ReferenceDecoder ref = references[c];
+			RECE232Decoder dec = decoders[c];
+			boolean expected = ref.load(msg.clone());
+			if (expected) decoded++;
+			ByteBuffer direct = ByteBuffer.allocateDirect(msg.length).put(msg);
+			direct.flip();
+			for (int k = 0; k < 2; k++) { // From the array, then from a direct buffer
+				assertEquals(expected, k == 0 ? dec.load(msg) : dec.load(direct), "message " + m);
+				if (!expected) continue;
+				assertEquals(ref.getHeader6Bit(), dec.getHeader6Bit(), "message " + m);
+				assertEquals(ref.nLongwords(), dec.nLongwords(), "message " + m);
+				assertEquals(ref.madeCorrections(), dec.madeCorrections(), "message " + m);
+				for (int j = 0; j < dec.nLongwords(); j++) assertEquals(ref.getLongword(j), dec.getLongword(j), "message " + m);
+			}
+		}
+		assertTrue(decoded > 30_000, decoded + " decoded");
+	}
+	
+	@Test
+	public void testLongMessage() {
+		int n = 50000;
+		Random rand = new Random(9301);
+		int[] data = new int[n];
+		for (int i = 0; i < n; i++) data[i] = rand.nextInt();
+		byte[] fin = RECE232.getEncoder().init((byte)0x2a, n).appendLongwords(data, 0, n).finish();
+		for (int i = 0; i < n; i++) fin[i*8 + rand.nextInt(8)] ^= 1 << rand.nextInt(5); // An in-range bit flip in every longword
+		
+		// Deeper than a recursive search could go, and the work should stay proportional to the length
+		RECE232Decoder dec = RECE232.getDecoder();
+		assertTrue(dec.load(fin));
+		assertTrue(dec.correctionNodes < 5 * n, "Visited " + dec.correctionNodes + " nodes");
+		assertEquals(0x2a, dec.getHeader6Bit());
+		int[] out = new int[n];
+		dec.getLongwords(out, 0);
+		assertArrayEquals(data, out);
+	}
+	
+	@Test
+	public void testMetrics() throws JMException {
+		RECE232Encoder encoder = RECE232.getEncoder();
+		encoder.init((byte)0x01, 3);
+		encoder.appendLongword(1).appendLongword(5).appendLongword(-234567865);
+		byte[] fin = encoder.finish();
+		
+		byte[] flipped = fin.clone();
+		flipped[1] ^= 1; // Non-obvious bit flips in two longwords
+		flipped[9] ^= 1;
+		byte[] dropped = new byte[fin.length - 1];
+		System.arraycopy(fin, 0, dropped, 0, 12);
+		System.arraycopy(fin, 13, dropped, 12, fin.length - 13);
+		
+		RECE232Metrics metrics = new RECE232Metrics();
+		int[] listened = new int[2];
+		metrics.setListener((decoded, latencyNanos, correctionNodes) -> {
+			if (decoded) listened[0]++;
+			listened[1] += correctionNodes;
+		});
+		RECE232Decoder dec = RECE232.getDecoder().setMetrics(metrics);
+		
+		assertTrue(dec.load(fin));
+		assertTrue(dec.load(flipped));
+		assertTrue(dec.load(dropped));
+		assertFalse(dec.load(new byte[20]));
+		
+		assertEquals(4, metrics.getMessages());
+		assertEquals(3, metrics.getDecodedMessages());
+		assertEquals(2, metrics.getCorrectedMessages());
+		assertEquals(1, metrics.getFailedMessages());
+		assertEquals(2, metrics.getBytesCorrected());
+		assertEquals(1, metrics.getGapsFilled());
+		assertTrue(metrics.getGapBranches() >= 1);
+		assertTrue(metrics.getMaxCorrectionDepth() >= 4); // Header frame plus one per longword
+		assertEquals(3, listened[0]);
+		assertEquals(metrics.getCorrectionNodes(), listened[1]);
+		assertEquals(4, Arrays.stream(metrics.getLatencyHistogram()).sum());
+		long maxLatency = metrics.getMaxLatencyNanos(), p99 = metrics.getLatencyP99Nanos();
+		assertTrue(p99 > maxLatency / 2 && p99 <= Long.highestOneBit(maxLatency) << 1); // Within the slowest load's power-of-two bucket
+		
+		ObjectName name = metrics.register("test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(4L, server.getAttribute(name, "Messages"));
+			server.invoke(name, "reset", null, null);
+			assertEquals(0, metrics.getMessages());
+		} finally {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		}
+	}
+	
+	@Test
+	public void testBatchDecode() {
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232NoiseSimulator channel = new RECE232NoiseSimulator(2019, 0.002, 0.005);
+		SplittableRandom rand = channel.random();
+		List<byte[]> messages = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			int n = 1 + rand.nextInt(7);
+			encoder.init((byte)rand.nextInt(64), n);
+			for (int j = 0; j < n; j++) encoder.appendLongword(rand.nextInt());
+			byte[] msg = encoder.finish();
+			byte[] rx = new byte[msg.length];
+			messages.add(Arrays.copyOf(rx, channel.transmit(msg, 0, msg.length, rx, 0)));
+		}
+		messages.add(new byte[2]);
+		
+		ForkJoinPool pool = new ForkJoinPool(4);
+		RECE232BatchDecoder batch = RECE232.getBatchDecoder(() -> RECE232.getDecoder().setSkipRecoveryOnCorruptedChecksum(false), pool);
+		RECE232BatchDecoder.Results results = batch.decode(messages);
+		results = batch.decode(messages.subList(0, 100), results); // Reused arrays
+		results = batch.decode(messages, results);
+		pool.shutdown();
+		
+		RECE232Decoder dec = RECE232.getDecoder().setSkipRecoveryOnCorruptedChecksum(false);
+		assertEquals(messages.size(), results.size());
+		for (int i = 0; i < messages.size(); i++) {
+			boolean ok = dec.load(messages.get(i));
+			assertEquals(ok, results.isDecoded(i));
+			if (!ok) continue;
+			assertEquals(dec.madeCorrections(), results.madeCorrections(i));
+			assertEquals(dec.getHeader6Bit(), results.getHeader6Bit(i));
+			assertEquals(dec.nLongwords(), results.nLongwords(i));
+			for (int j = 0; j < dec.nLongwords(); j++) assertEquals(dec.getLongword(j), results.getLongword(i, j));
+		}
+		assertFalse(results.isDecoded(messages.size() - 1));
+		assertEquals(0, results.nLongwords(messages.size() - 1));
+	}
+	
+	// 50 rounds of: clean, corrected, rejected, overlong garbage, blank, CRLF-terminated
+	private static byte[] streamTestData() throws IOException {
+		RECE232Encoder encoder = RECE232.getEncoder();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (int i = 0; i < 50; i++) {
+			for (int k = 0; k < 3; k++) {
+				encoder.init((byte)k, 3).appendLongword(i).appendLongword(k).appendLongword(-i);
+				byte[] fin = encoder.finish();
+				if (k == 1) fin[4] ^= 0x80;
+				if (k == 2) fin = Arrays.copyOf(fin, 15);
+				stream.write(fin);
+				stream.write('\n');
+			}
+			for (int k = 0; k < 100; k++) stream.write('x');
+			stream.write('\n');
+			stream.write('\n');
+			encoder.init((byte)3, 1).appendLongword(i);
+			stream.write(encoder.finish());
+			stream.write('\r');
+			stream.write('\n');
+		}
+		encoder.init((byte)4, 1).appendLongword(50);
+		stream.write(encoder.finish()); // Unterminated
+		return stream.toByteArray();
+	}
+	
+	@Test
+	public void testStreamDecode() throws IOException {
+		byte[] data = streamTestData();
+		
+		int[] headers = new int[5];
+		RECE232StreamDecoder.FrameHandler handler = (dec) -> {
+			headers[dec.getHeader6Bit()]++;
+			if (dec.nLongwords() == 3) assertEquals(dec.getHeader6Bit(), dec.getLongword(1));
+		};
+		RECE232StreamDecoder streamDec = RECE232.getStreamDecoder(RECE232.getDecoder(), 4, handler);
+		streamDec.readFully(new InputStream() { // Small, uneven reads
+			int pos = 0;
+			@Override public int read() { return pos < data.length ? data[pos++] & 0xff : -1; }
+			@Override public int read(byte[] b, int off, int len) {
+				if (pos == data.length) return -1;
+				len = Math.min(Math.min(len, 7 + pos % 13), data.length - pos);
+				System.arraycopy(data, pos, b, off, len);
+				pos += len;
+				return len;
+			}
+		});
+		assertArrayEquals(new int[] {50, 50, 0, 50, 1}, headers);
+		assertEquals(101, streamDec.goodFrames());
+		assertEquals(50, streamDec.correctedFrames());
+		assertEquals(50, streamDec.rejectedFrames());
+		assertEquals(50, streamDec.overlongFrames());
+		
+		// Same stream through a channel in one piece
+		Arrays.fill(headers, 0);
+		streamDec.resetCounters();
+		streamDec.readFully(Channels.newChannel(new ByteArrayInputStream(data)));
+		assertArrayEquals(new int[] {50, 50, 0, 50, 1}, headers);
+		assertEquals(101, streamDec.goodFrames());
+	}
+	
+	@Test
+	public void testPushDecode() throws IOException {
+		byte[] data = streamTestData();
+		List<Integer> expected = new ArrayList<>(), actual = new ArrayList<>();
+		RECE232StreamDecoder streamDec = RECE232.getStreamDecoder(RECE232.getDecoder(), 4, (dec) -> expected.add((int)dec.getHeader6Bit()));
+		streamDec.readFully(new ByteArrayInputStream(data));
+		
+		RECE232PushDecoder pushDec = RECE232.getPushDecoder(RECE232.getDecoder(), 4, (dec) -> actual.add((int)dec.getHeader6Bit()));
+		for (byte b : data) pushDec.feed(b);
+		pushDec.finish();
+		assertEquals(expected, actual);
+		assertEquals(streamDec.goodFrames(), pushDec.goodFrames());
+		assertEquals(streamDec.correctedFrames(), pushDec.correctedFrames());
+		assertEquals(streamDec.rejectedFrames(), pushDec.rejectedFrames());
+		assertEquals(streamDec.overlongFrames(), pushDec.overlongFrames());
+		
+		actual.clear();
+		pushDec.feed(ByteBuffer.wrap(data));
+		pushDec.finish();
+		assertEquals(expected, actual);
+		
+		// Early rejection must never drop a line the decoder could have corrected
+		RECE232Encoder encoder = RECE232.getEncoder().setUseTabs(true);
+		RECE232Decoder dec = RECE232.getDecoder().setConvertTabs(true).setSkipRecoveryOnCorruptedChecksum(false);
+		RECE232NoiseSimulator channel = new RECE232NoiseSimulator(2019, 0.01, 0.02);
+		SplittableRandom rand = channel.random();
+		int[] frames = new int[2];
+		int[] longwords = new int[7];
+		pushDec = RECE232.getPushDecoder(dec, 7, new RECE232StreamDecoder.FrameHandler() {
+			@Override public void onFrame(RECE232Decoder d) {
+				frames[0]++;
+				for (int j = 0; j < d.nLongwords(); j++) assertEquals(longwords[j], d.getLongword(j));
+			}
+			@Override public void onRejected(byte[] line, int off, int len) {
+				frames[1]++;
+			}
+		});
+		int rejects = 0;
+		for (int i = 0; i < 20000; i++) {
+			int n = 1 + rand.nextInt(7);
+			encoder.init((byte)rand.nextInt(64), n);
+			for (int j = 0; j < n; j++) encoder.appendLongword(longwords[j] = rand.nextInt());
+			byte[] msg = encoder.finish();
+			byte[] rx = new byte[msg.length];
+			int len = channel.transmit(msg, 0, msg.length, rx, 0);
+			if (rand.nextInt(4) == 0) for (int j = 0; j < len; j += 3) rx[j] = (byte)rand.nextInt(32); // Heavy garbage
+			for (int j = 0; j < len; j++) if (rx[j] == '\n' || rx[j] == '\r') rx[j] = 0; // Keep it one line
+			
+			boolean ok = dec.load(rx, 0, len);
+			frames[0] = frames[1] = 0;
+			pushDec.feed(rx, 0, len);
+			pushDec.feed((byte)'\n');
+			assertEquals(ok ? 1 : 0, frames[0]);
+			assertEquals(ok || len == 0 ? 0 : 1, frames[1]); // Early rejects reach the handler too
+			if (!ok && len > 0) rejects++;
+		}
+		assertTrue(pushDec.earlyRejectedFrames() > 1000);
+		assertEquals(rejects, pushDec.rejectedFrames());
+	}
+	
+	@Test
+	public void testCaptureScan(@TempDir Path dir) throws IOException {
+		byte[] data = streamTestData();
+		Path file = dir.resolve("capture.txt");
+		Files.write(file, data);
+		
+		List<Integer> expected = new ArrayList<>();
+		RECE232StreamDecoder streamDec = RECE232.getStreamDecoder(RECE232.getDecoder(), 4, (dec) -> expected.add((int)dec.getHeader6Bit()));
+		streamDec.readFully(new ByteArrayInputStream(data));
+		
+		ForkJoinPool pool = new ForkJoinPool(3);
+		for (int chunk : new int[] {1, 7, 36, 37, 38, 500, 1 << 20}) { // Around the 37-byte window of a 4-longword line
+			ConcurrentSkipListMap<Long, Integer> frames = new ConcurrentSkipListMap<>();
+			RECE232CaptureScanner scanner = RECE232.getCaptureScanner(RECE232::getDecoder, 4, pool).setChunkSize(chunk);
+			RECE232CaptureScanner.Stats stats = scanner.scan(file, (position, dec) -> frames.put(position, (int)dec.getHeader6Bit()));
+			assertEquals(data.length, stats.bytes());
+			assertEquals(streamDec.goodFrames(), stats.goodFrames());
+			assertEquals(streamDec.correctedFrames(), stats.correctedFrames());
+			assertEquals(streamDec.rejectedFrames(), stats.rejectedFrames());
+			assertEquals(streamDec.overlongFrames(), stats.overlongFrames());
+			assertEquals(expected, new ArrayList<>(frames.values()));
+		}
+		
+		// An I/O failure in a chunk surfaces as the IOException itself; interrupting a mapping thread closes the channel
+		RECE232CaptureScanner scanner = RECE232.getCaptureScanner(RECE232::getDecoder, 4, pool).setChunkSize(64);
+		assertThrows(IOException.class, () -> scanner.scan(file, (position, dec) -> Thread.currentThread().interrupt()));
+		pool.shutdown();
+	}
+	
+	@Test
+	public void testPipeline() throws IOException {
+		byte[] data = streamTestData();
+		List<Integer> expected = new ArrayList<>();
+		RECE232StreamDecoder streamDec = RECE232.getStreamDecoder(RECE232.getDecoder(), 4, (dec) -> expected.add((int)dec.getHeader6Bit()));
+		streamDec.readFully(new ByteArrayInputStream(data));
+		
+		for (RECE232Pipeline.WaitStrategy strategy : RECE232Pipeline.WaitStrategy.values()) {
+			if (strategy == RECE232Pipeline.WaitStrategy.SPIN && Runtime.getRuntime().availableProcessors() < 5) continue; // Every stage holds a core
+			List<Integer> actual = new ArrayList<>();
+			long[] sequence = {0};
+			RECE232Pipeline.FrameHandler handler = new RECE232Pipeline.FrameHandler() {
+				@Override public void onFrame(RECE232Pipeline.Frame frame) {
+					assertEquals(sequence[0]++, frame.sequence());
+					actual.add((int)frame.getHeader6Bit());
+					if (frame.nLongwords() == 3) assertEquals(frame.getHeader6Bit(), frame.getLongword(1));
+				}
+				@Override public void onRejected(RECE232Pipeline.Frame frame) {
+					assertEquals(sequence[0]++, frame.sequence());
+					assertEquals(15, frame.length());
+					assertFalse(frame.madeCorrections()); // Nothing left over from the last message in this slot
+					assertEquals(0, frame.getHeader6Bit());
+				}
+			};
+			RECE232Pipeline pipeline = RECE232.getPipeline(RECE232::getDecoder, 4, handler)
+					.setWorkers(3).setCapacity(8).setWaitStrategy(strategy).start();
+			try (RECE232Pipeline p = pipeline) {
+				for (int pos = 0; pos < data.length;) { // Small, uneven pieces through both entry points
+					int len = Math.min(7 + pos % 13, data.length - pos);
+					if (pos % 2 == 0) p.feed(data, pos, len);
+					else p.feed(ByteBuffer.wrap(data, pos, len));
+					pos += len;
+				}
+			}
+			assertEquals(expected, actual);
+			assertEquals(streamDec.goodFrames(), pipeline.goodFrames());
+			assertEquals(streamDec.correctedFrames(), pipeline.correctedFrames());
+			assertEquals(streamDec.rejectedFrames(), pipeline.rejectedFrames());
+			assertEquals(streamDec.overlongFrames(), pipeline.overlongFrames());
+			
+			// Closed for good: feeding would wait on workers that are gone
+			assertThrows(IllegalStateException.class, () -> pipeline.feed(data, 0, 1));
+			assertThrows(IllegalStateException.class, () -> pipeline.feed(ByteBuffer.wrap(data, 0, 1)));
+			assertThrows(IllegalStateException.class, pipeline::finish);
+			pipeline.close();
+		}
+		
+		// A failing handler doesn't stall the reader, and close() reports it
+		RECE232Pipeline pipeline = RECE232.getPipeline(RECE232::getDecoder, 4, (frame) -> { throw new ArithmeticException(); })
+				.setWorkers(1).setCapacity(2).start();
+		pipeline.feed(data, 0, data.length);
+		IllegalStateException e = assertThrows(IllegalStateException.class, pipeline::close);
+		assertTrue(e.getCause() instanceof ArithmeticException);
+		assertThrows(IllegalStateException.class, () -> pipeline.setWorkers(2));
+		
+		// A throwing decoder rejects its line instead of stalling the consumer, and close() reports it
+		AtomicInteger loads = new AtomicInteger();
+		RECE232Metrics throwing = new RECE232Metrics().setListener((decoded, latencyNanos, correctionNodes) -> {
+			if (loads.incrementAndGet() % 5 == 0) throw new ArithmeticException();
+		});
+		long[] handled = new long[2];
+		RECE232Pipeline failingDecoder = RECE232.getPipeline(() -> RECE232.getDecoder().setMetrics(throwing), 4,
+				new RECE232Pipeline.FrameHandler() {
+					@Override public void onFrame(RECE232Pipeline.Frame frame) { handled[0]++; }
+					@Override public void onRejected(RECE232Pipeline.Frame frame) { handled[1]++; }
+				}).setWorkers(2).setCapacity(4).start();
+		failingDecoder.feed(data, 0, data.length);
+		e = assertThrows(IllegalStateException.class, failingDecoder::close);
+		assertTrue(e.getCause() instanceof ArithmeticException);
+		assertEquals(streamDec.goodFrames() + streamDec.correctedFrames() + streamDec.rejectedFrames(), handled[0] + handled[1]);
+		assertTrue(failingDecoder.rejectedFrames() > streamDec.rejectedFrames());
+	}
+	
+	@Test
+	public void testGateway() throws IOException, InterruptedException {
+		int connections = 12, messages = 300, n = 3;
+		ConcurrentHashMap<SocketAddress, Integer> next = new ConcurrentHashMap<>(); // Next message number on each connection
+		List<String> errors = Collections.synchronizedList(new ArrayList<>());
+		RECE232Gateway.FrameSink sink = (source, dec) -> {
+			if (dec.getHeader6Bit() == 63) throw new IllegalStateException("Sink failure");
+			int c = dec.getLongword(0), m = dec.getLongword(1);
+			if (dec.getHeader6Bit() != c % 64 || m != next.getOrDefault(source, 0) || dec.getLongword(2) != RECE232LoadGenerator.longword(c, m, 2)) {
+				errors.add(source + ": message " + m + " of connection " + c);
+			}
+			next.put(source, m + 1);
+		};
+		
+		RECE232Gateway gateway = RECE232.getGateway(RECE232::getDecoder, n, sink);
+		try {
+			InetSocketAddress address = gateway.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			new RECE232LoadGenerator(connections, messages, n).run(address);
+			
+			// A message the sink throws on, then a line that doesn't decode and overlong runs, one cut off by EOF
+			try (SocketChannel ch = SocketChannel.open(address)) {
+				byte[] failing = RECE232.getEncoder().init((byte)63, n).appendLongwords(new int[n], 0, n).finish();
+				ch.write(ByteBuffer.wrap(failing));
+				ch.write(ByteBuffer.wrap("\nnot a message\n".getBytes(StandardCharsets.US_ASCII)));
+				byte[] overlong = new byte[200];
+				Arrays.fill(overlong, (byte)'@');
+				overlong[199] = '\n';
+				ch.write(ByteBuffer.wrap(overlong));
+				ch.write(ByteBuffer.wrap(overlong, 0, 60));
+			}
+			
+			long deadline = System.nanoTime() + 10_000_000_000L;
+			while ((gateway.acceptedConnections() < connections + 1 || gateway.activeConnections() > 0) && System.nanoTime() < deadline) Thread.sleep(5);
+			assertEquals(connections + 1, gateway.acceptedConnections());
+			assertEquals(0, gateway.activeConnections());
+			assertEquals(connections * messages + 1, gateway.goodFrames());
+			assertEquals(0, gateway.correctedFrames());
+			assertEquals(1, gateway.rejectedFrames());
+			assertEquals(2, gateway.overlongFrames());
+			assertEquals(1, gateway.sinkFailures());
+			assertEquals("Sink failure", gateway.lastSinkFailure().getMessage());
+			assertNull(gateway.acceptFailure());
+			assertTrue(errors.isEmpty(), errors.toString());
+			assertEquals(connections, next.size());
+			for (int m : next.values()) assertEquals(messages, m);
+			
+			// Closing the gateway drops idle connections
+			try (SocketChannel idle = SocketChannel.open(address)) {
+				while (gateway.activeConnections() == 0 && System.nanoTime() < deadline) Thread.sleep(5);
+				gateway.close();
+				assertEquals(-1, idle.read(ByteBuffer.allocate(1)));
+			}
+		} finally {
+			gateway.close();
+		}
+		
+		// Failing to start a connection thread stops the gateway instead of leaving it half alive
+		AtomicInteger started = new AtomicInteger();
+		RECE232Gateway starved = RECE232.getGateway(RECE232::getDecoder, n, sink).setThreadFactory((r) -> {
+			if (started.getAndIncrement() > 0) throw new IllegalStateException("Out of threads");
+			Thread t = new Thread(r);
+			t.setDaemon(true);
+			t.setUncaughtExceptionHandler((thread, e) -> { }); // Expected
+			return t;
+		});
+		try {
+			InetSocketAddress address = starved.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			try (SocketChannel ch = SocketChannel.open(address)) {
+				assertEquals(-1, ch.read(ByteBuffer.allocate(1)));
+			}
+			long deadline = System.nanoTime() + 10_000_000_000L;
+			boolean refused = false;
+			while (!refused && System.nanoTime() < deadline) {
+				try {
+					SocketChannel.open(address).close();
+					Thread.sleep(5);
+				} catch (IOException e) {
+					refused = true;
+				}
+			}
+			assertTrue(refused);
+			assertEquals("Out of threads", starved.acceptFailure().getMessage());
+		} finally {
+			starved.close();
+		}
+	}
+	
+	@Test
+	public void testStreamEncode() throws IOException {
+		RECE232Encoder encoder = RECE232.getEncoder().setUseTabs(true);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		int[] writes = new int[1];
+		WritableByteChannel channel = Channels.newChannel(new OutputStream() {
+			@Override public void write(int b) { actual.write(b); }
+			@Override public void write(byte[] b, int off, int len) { writes[0]++; actual.write(b, off, len); }
+		});
+		
+		RECE232StreamEncoder streamEnc = RECE232.getStreamEncoder(RECE232.getEncoder().setUseTabs(true), channel, 256);
+		for (int i = 0; i < 100; i++) {
+			int[] lws = new int[1 + i % 7];
+			for (int k = 0; k < lws.length; k++) lws[k] = i * 0x10204081 - k;
+			
+			encoder.init((byte)i, lws.length);
+			for (int lw : lws) encoder.appendLongword(lw);
+			expected.write(encoder.finish());
+			expected.write('\n');
+			
+			if (i % 2 == 0) {
+				streamEnc.write((byte)i, lws, 0, lws.length);
+			} else {
+				RECE232Encoder enc = streamEnc.begin((byte)i, lws.length);
+				for (int lw : lws) enc.appendLongword(lw);
+				streamEnc.end();
+			}
+		}
+		assertTrue(actual.size() < expected.size()); // Final batch still pending
+		streamEnc.flush();
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+		assertTrue(writes[0] <= expected.size() / (256 - 60) + 1); // Batched, not one write per message
+		
+		// Incomplete and aborted messages are dropped without wedging the stream encoder
+		actual.reset();
+		streamEnc.begin((byte)1, 2).appendLongword(1);
+		assertThrows(IllegalStateException.class, streamEnc::end);
+		streamEnc.begin((byte)2, 1).appendLongword(2);
+		streamEnc.abort();
+		assertThrows(IndexOutOfBoundsException.class, () -> streamEnc.write((byte)4, new int[] {4}, 1, 1));
+		streamEnc.write((byte)3, new int[] {3}, 0, 1);
+		streamEnc.flush();
+		encoder.init((byte)3, 1).appendLongword(3);
+		byte[] last = Arrays.copyOf(encoder.finish(), 12);
+		last[11] = '\n';
+		assertArrayEquals(last, actual.toByteArray());
+		assertThrows(IllegalArgumentException.class, () -> streamEnc.begin((byte)0, 0));
+		
+		// A write that fails part way keeps the unwritten bytes ahead of the next message
+		ByteArrayOutputStream partial = new ByteArrayOutputStream();
+		int[] failAt = {3};
+		RECE232StreamEncoder flaky = RECE232.getStreamEncoder(RECE232.getEncoder().setUseTabs(true), new WritableByteChannel() {
+			@Override public int write(ByteBuffer src) throws IOException {
+				if (--failAt[0] == 0) throw new IOException("Line dropped");
+				int n = Math.min(5, src.remaining());
+				for (int k = 0; k < n; k++) partial.write(src.get());
+				return n;
+			}
+			@Override public boolean isOpen() { return true; }
+			@Override public void close() { }
+		}, 64);
+		flaky.write((byte)3, new int[] {3}, 0, 1);
+		assertThrows(IOException.class, flaky::flush);
+		flaky.write((byte)3, new int[] {3}, 0, 1);
+		flaky.flush();
+		byte[] twice = Arrays.copyOf(last, 24);
+		System.arraycopy(last, 0, twice, 12, 12);
+		assertArrayEquals(twice, partial.toByteArray()); // Nothing lost or repeated
+		
+		// Closing in the middle of a message still writes out the completed ones
+		actual.reset();
+		streamEnc.write((byte)3, new int[] {3}, 0, 1);
+		streamEnc.begin((byte)5, 1).appendLongword(5);
+		assertEquals(0, actual.size()); // Below the flush threshold
+		streamEnc.close();
+		assertArrayEquals(last, actual.toByteArray());
+		
+		Pipe pipe = Pipe.open();
+		try {
+			pipe.sink().configureBlocking(false);
+			assertThrows(IllegalArgumentException.class, () -> RECE232.getStreamEncoder(RECE232.getEncoder(), pipe.sink(), 64));
+		} finally {
+			pipe.sink().close();
+			pipe.source().close();
+		}
+	}
+	
+	@Test
+	public void testBulk() {
+		RECE232Encoder encoder = RECE232.getEncoder();
+		RECE232Decoder dec = RECE232.getDecoder();
+		float[] floats = {1.5f, -0f, Float.NaN, Float.MAX_VALUE, 3.14159f};
+		int[] ints = new int[floats.length];
+		for (int i = 0; i < ints.length; i++) ints[i] = Float.floatToRawIntBits(floats[i]);
+		
+		encoder.init((byte)7, ints.length);
+		for (int lw : ints) encoder.appendLongword(lw);
+		byte[] expected = encoder.finish();
+		
+		encoder.init((byte)7, ints.length).appendLongwords(ints, 0, 2).appendFloats(floats, 2, 3);
+		assertArrayEquals(expected, encoder.finish());
+		
+		IntBuffer intBuf = IntBuffer.wrap(ints, 1, 4);
+		FloatBuffer floatBuf = ByteBuffer.allocateDirect(4).asFloatBuffer().put(floats[0]);
+		floatBuf.flip();
+		encoder.init((byte)7, ints.length).appendFloats(floatBuf).appendLongwords(intBuf);
+		assertArrayEquals(expected, encoder.finish());
+		assertEquals(5, intBuf.position());
+		assertEquals(1, floatBuf.position());
+		
+		// Heap slices go through their backing array, direct buffers element by element
+		FloatBuffer floatSlice = ((FloatBuffer)FloatBuffer.wrap(floats).position(1)).slice();
+		IntBuffer directInts = ByteBuffer.allocateDirect(4).asIntBuffer().put(ints[0]);
+		directInts.flip();
+		encoder.init((byte)7, ints.length).appendLongwords(directInts).appendFloats(floatSlice);
+		assertArrayEquals(expected, encoder.finish());
+		assertEquals(4, floatSlice.position());
+		
+		// A bad range is rejected before any longwords are reserved
+		encoder.init((byte)7, ints.length);
+		assertThrows(IndexOutOfBoundsException.class, () -> encoder.appendLongwords(ints, 3, 4));
+		assertThrows(IndexOutOfBoundsException.class, () -> encoder.appendFloats(floats, -1, 2));
+		assertThrows(IndexOutOfBoundsException.class, () -> encoder.appendLongwords(ints, 1, -1));
+		assertArrayEquals(expected, encoder.appendLongwords(ints, 0, ints.length).finish());
+		
+		encoder.init((byte)7, 1);
+		assertThrows(IllegalStateException.class, () -> encoder.appendLongwords(ints, 0, 2));
+		
+		assertTrue(dec.load(expected));
+		int[] intsOut = new int[ints.length + 1];
+		float[] floatsOut = new float[floats.length + 1];
+		dec.getLongwords(intsOut, 1);
+		dec.getFloats(floatsOut, 1);
+		assertArrayEquals(ints, Arrays.copyOfRange(intsOut, 1, intsOut.length));
+		for (int i = 0; i < floats.length; i++) assertEquals(ints[i], Float.floatToRawIntBits(floatsOut[i + 1]));
+	}
+	
+	@Test
+	public void testNoiseSimulator() {
+		byte[] src = new byte[1 << 20];
+		byte[] a = new byte[src.length], b = new byte[src.length];
+		
+		RECE232NoiseSimulator clean = new RECE232NoiseSimulator(1, 0, 0);
+		assertEquals(src.length, clean.transmit(src, 0, src.length, a, 0));
+		assertFalse(clean.modified());
+		
+		RECE232NoiseSimulator x = new RECE232NoiseSimulator(1, 0.001, 0.0025);
+		RECE232NoiseSimulator y = new RECE232NoiseSimulator(1, 0.001, 0.0025);
+		int lenA = x.transmit(src, 0, src.length, a, 0);
+		int lenB = 0;
+		for (int off = 0; off < src.length; off += 35) { // Same stream in message-sized pieces
+			lenB += y.transmit(src, off, Math.min(35, src.length - off), b, lenB);
+		}
+		assertEquals(lenA, lenB);
+		assertArrayEquals(a, b);
+		assertEquals(src.length - x.droppedByteCount, lenA);
+		
+		long ones = 0;
+		for (int i = 0; i < lenA; i++) ones += Integer.bitCount(a[i] & 0xff);
+		assertEquals(x.bitFlipCount, ones);
+		assertEquals(0.001 * 8 * lenA, x.bitFlipCount, 0.001 * 8 * lenA * 0.05);
+		assertEquals(0.0025 * src.length, x.droppedByteCount, 0.0025 * src.length * 0.05);
+		
+		// Dropouts averaging 8 bytes after good runs averaging 1000
+		RECE232NoiseSimulator z = new RECE232NoiseSimulator(1, 0, 0).setDropout(0.001, 8);
+		int lenZ = z.transmit(src, 0, src.length, a, 0);
+		assertEquals(src.length - z.droppedByteCount, lenZ);
+		assertEquals(src.length / 1008., z.burstCount, src.length / 1008. * 0.1);
+		assertEquals(8. * z.burstCount, z.droppedByteCount, 8. * z.burstCount * 0.1);
+	}
+	
 	@Test
 	public void testErrors() {
 		RECE232Encoder encoder = RECE232.getEncoder();
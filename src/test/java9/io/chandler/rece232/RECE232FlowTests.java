@@ -0,0 +1,181 @@
+/*
+This is free and unencumbered software released into the public domain.
+
+Anyone is free to copy, modify, publish, use, compile, sell, or
+distribute this software, either in source code form or as a compiled
+binary, for any purpose, commercial or non-commercial, and by any
+means.
+
+In jurisdictions that recognize copyright laws, the author or authors
+of this software dedicate any and all copyright interest in the
+software to the public domain. We make this dedication for the benefit
+of the public at large and to the detriment of our heirs and
+successors. We intend this dedication to be an overt act of
+relinquishment in perpetuity of all present and future rights to this
+software under copyright law.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+OTHER DEALINGS IN THE SOFTWARE.
+
+For more information, please refer to <https://unlicense.org>
+ */
+package io.chandler.rece232;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.chandler.rece232.RECE232.RECE232Encoder;
+import io.chandler.rece232.RECE232Flow.Message;
+
+/**
+ * Tests for the Flow stages, built on JDK 9 and later
+ */
+public class RECE232FlowTests {
+	
+	// Delivers fixed chunks synchronously, counting what was asked for
+	private static class ChunkPublisher implements Flow.Publisher<ByteBuffer> {
+		final List<byte[]> chunks;
+		long requested;
+		int delivered;
+		
+		ChunkPublisher(List<byte[]> chunks) {
+			this.chunks = chunks;
+		}
+		
+		@Override
+		public void subscribe(Flow.Subscriber<? super ByteBuffer> s) {
+			s.onSubscribe(new Flow.Subscription() {
+				@Override public void request(long n) {
+					requested += n;
+					while (delivered < requested && delivered < chunks.size()) {
+						s.onNext(ByteBuffer.wrap(chunks.get(delivered++)));
+						if (delivered == chunks.size()) s.onComplete();
+					}
+				}
+				@Override public void cancel() { }
+			});
+		}
+	}
+	
+	// Collects items, requesting a fixed number up front
+	private static class Collector<T> implements Flow.Subscriber<T> {
+		final List<T> items = new ArrayList<>();
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		final long initialRequest;
+		Flow.Subscription subscription;
+		
+		Collector(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+		
+		@Override public void onSubscribe(Flow.Subscription s) {
+			subscription = s;
+			if (initialRequest > 0) s.request(initialRequest);
+		}
+		@Override public void onNext(T item) { items.add(item); }
+		@Override public void onError(Throwable t) { done.completeExceptionally(t); }
+		@Override public void onComplete() { done.complete(null); }
+	}
+	
+	@Test
+	public void testRoundTrip() throws Exception {
+		SplittableRandom rand = new SplittableRandom(23);
+		List<Message> sent = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			int[] longwords = new int[1 + rand.nextInt(6)];
+			for (int j = 0; j < longwords.length; j++) longwords[j] = rand.nextInt();
+			sent.add(Message.of((byte)rand.nextInt(64), longwords));
+		}
+		
+		RECE232Flow.EncodeProcessor encode = RECE232Flow.getEncodeProcessor(RECE232.getEncoder()).setDelimiter(new byte[] {'\r', '\n'});
+		RECE232Flow.DecodeProcessor decode = RECE232Flow.getDecodeProcessor(RECE232.getDecoder(), 6);
+		Collector<Message> received = new Collector<>(Long.MAX_VALUE);
+		try (SubmissionPublisher<Message> publisher = new SubmissionPublisher<>()) {
+			publisher.subscribe(encode);
+			encode.subscribe(decode);
+			decode.subscribe(received);
+			for (Message m : sent) publisher.submit(m);
+		}
+		received.done.get(10, TimeUnit.SECONDS);
+		
+		assertEquals(sent.size(), received.items.size());
+		for (int i = 0; i < sent.size(); i++) {
+			assertEquals(sent.get(i).getHeader6Bit(), received.items.get(i).getHeader6Bit());
+			assertArrayEquals(sent.get(i).getLongwords(), received.items.get(i).getLongwords());
+		}
+		assertEquals(sent.size(), decode.goodFrames());
+	}
+	
+	@Test
+	public void testDecodeBackpressure() throws Exception {
+		// One message per chunk, with noise, rejects and an unterminated tail
+		RECE232Encoder encoder = RECE232.getEncoder();
+		List<byte[]> chunks = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			byte[] msg = encoder.init((byte)(i & 0x3f), 2).appendLongword(i).appendLongword(-i).finish();
+			if (i % 10 == 3) msg[5] ^= 0x01;   // Corrected
+			if (i % 10 == 7) msg = Arrays.copyOf(msg, 8); // Rejected
+			if (i < 99) {
+				msg = Arrays.copyOf(msg, msg.length + 1);
+				msg[msg.length - 1] = '\n';
+			}
+			chunks.add(msg);
+		}
+		
+		ChunkPublisher source = new ChunkPublisher(chunks);
+		RECE232Flow.DecodeProcessor decode = RECE232Flow.getDecodeProcessor(RECE232.getDecoder(), 2);
+		Collector<Message> received = new Collector<>(5);
+		source.subscribe(decode);
+		decode.subscribe(received);
+		
+		// Reads stop as soon as demand is met
+		assertEquals(5, received.items.size());
+		assertEquals(5, source.delivered);
+		
+		received.subscription.request(10); // Skips over the rejected line at chunk 7
+		assertEquals(15, received.items.size());
+		assertEquals(16, source.delivered);
+		
+		received.subscription.request(Long.MAX_VALUE);
+		received.done.get(10, TimeUnit.SECONDS);
+		assertEquals(90, received.items.size());
+		for (Message m : received.items) assertEquals(-m.getLongword(0), m.getLongword(1));
+		assertEquals(10, received.items.stream().filter(Message::madeCorrections).count());
+		assertEquals(80, decode.goodFrames());
+		assertEquals(10, decode.correctedFrames());
+		assertEquals(10, decode.rejectedFrames());
+		assertEquals(99, received.items.get(89).getLongword(0)); // Unterminated last line
+	}
+	
+	@Test
+	public void testProtocolErrors() throws Exception {
+		RECE232Flow.DecodeProcessor decode = RECE232Flow.getDecodeProcessor(RECE232.getDecoder(), 2);
+		new ChunkPublisher(new ArrayList<>()).subscribe(decode);
+		Collector<Message> first = new Collector<>(0);
+		decode.subscribe(first);
+		first.subscription.request(0);
+		assertTrue(first.done.isCompletedExceptionally());
+		
+		Collector<Message> second = new Collector<>(1);
+		decode.subscribe(second);
+		assertTrue(second.done.isCompletedExceptionally());
+	}
+}